@@ -5,6 +5,7 @@ import com.google.common.base.Strings;
 import net.gegy1000.earth.server.ServerProxy;
 import net.gegy1000.earth.server.capability.EarthWorld;
 import net.gegy1000.earth.server.command.GeoDebugCommand;
+import net.gegy1000.earth.server.command.GeoStallsCommand;
 import net.gegy1000.earth.server.command.GeoTeleportCommand;
 import net.gegy1000.earth.server.command.GeoToolCommand;
 import net.gegy1000.earth.server.config.TerrariumEarthConfig;
@@ -21,6 +22,7 @@ import net.gegy1000.earth.server.world.cover.CoverMarkers;
 import net.gegy1000.earth.server.world.data.EarthApiKeys;
 import net.gegy1000.earth.server.world.data.GoogleGeocoder;
 import net.gegy1000.earth.server.world.data.NominatimGeocoder;
+import net.gegy1000.earth.server.world.data.source.StdSource;
 import net.gegy1000.terrarium.server.capability.VoidStorage;
 import net.gegy1000.terrarium.server.world.TerrariumWorldType;
 import net.gegy1000.terrarium.server.world.data.source.Geocoder;
@@ -36,6 +38,7 @@ import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 import net.minecraftforge.fml.common.network.NetworkCheckHandler;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
@@ -111,12 +114,18 @@ public class TerrariumEarth {
     public static void onServerStarting(FMLServerStartingEvent event) {
         event.registerServerCommand(new GeoTeleportCommand());
         event.registerServerCommand(new GeoToolCommand());
+        event.registerServerCommand(new GeoStallsCommand());
 
         if (deobfuscatedEnvironment) {
             event.registerServerCommand(new GeoDebugCommand());
         }
     }
 
+    @Mod.EventHandler
+    public static void onServerStopping(FMLServerStoppingEvent event) {
+        StdSource.flushDecodedTiles();
+    }
+
     public static Geocoder getPreferredGeocoder() {
         EarthApiKeys keys = SharedEarthData.instance().get(SharedEarthData.API_KEYS);
         if (TerrariumEarthConfig.osmGeocoder || (keys == null || Strings.isNullOrEmpty(keys.getGeocoderKey()))) {
@@ -4,6 +4,7 @@ import net.gegy1000.earth.TerrariumEarth;
 import net.gegy1000.earth.server.world.EarthData;
 import net.gegy1000.terrarium.server.capability.TerrariumWorld;
 import net.gegy1000.terrarium.server.world.coordinate.CoordinateReference;
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.raster.ShortRaster;
 import net.gegy1000.terrarium.server.world.data.source.Geocoder;
@@ -90,7 +91,8 @@ public interface EarthWorld extends ICapabilityProvider {
 
             ShortRaster.Sampler sampler = ShortRaster.sampler(EarthData.TERRAIN_HEIGHT);
 
-            short height = sampler.sample(dataCache, blockX, blockZ);
+            ColumnData data = dataCache.queryPoint(blockX, blockZ, EarthData.TERRAIN_HEIGHT);
+            short height = sampler.sample(data, blockX, blockZ);
             return new BlockPos(blockX, height + 1, blockZ);
         }
     }
@@ -11,9 +11,11 @@ import net.gegy1000.earth.server.world.ecology.soil.SoilSuborder;
 import net.gegy1000.earth.server.world.ecology.vegetation.Trees;
 import net.gegy1000.terrarium.server.capability.TerrariumWorld;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
+import net.gegy1000.terrarium.server.world.data.ColumnDataLoader;
 import net.gegy1000.terrarium.server.world.data.DataView;
 import net.gegy1000.terrarium.server.world.data.raster.EnumRaster;
 import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
+import net.gegy1000.terrarium.server.world.data.source.DataSourceReader;
 import net.minecraft.command.CommandBase;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
@@ -23,6 +25,7 @@ import net.minecraft.init.Items;
 import net.minecraft.item.Item;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextComponentTranslation;
 
 import javax.imageio.ImageIO;
@@ -75,6 +78,15 @@ public class GeoDebugCommand extends CommandBase {
                 this.writeProfiles(debug.takeTestProfiles());
             });
 
+            builder.addElement(Items.CLOCK, "Column Cache Stats", () -> {
+                TerrariumWorld terrarium = TerrariumWorld.get(player.world);
+                if (terrarium != null) {
+                    ColumnDataLoader.RetentionStats stats = terrarium.getDataCache().getRetentionStats();
+                    player.sendMessage(new TextComponentString("Column data retention: " + stats));
+                }
+                player.sendMessage(new TextComponentString("Tile cache: " + DataSourceReader.INSTANCE.getCacheStats()));
+            });
+
             ContainerUi ui = builder.build();
             player.displayGUIChest(ui.createInventory());
         } else {
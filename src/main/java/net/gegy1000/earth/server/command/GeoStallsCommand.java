@@ -0,0 +1,67 @@
+package net.gegy1000.earth.server.command;
+
+import net.gegy1000.earth.TerrariumEarth;
+import net.gegy1000.terrarium.server.world.data.StallWatchdog;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.util.text.TextComponentTranslation;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+public class GeoStallsCommand extends CommandBase {
+    private static final int REPORT_LINES = 10;
+
+    @Override
+    public String getName() {
+        return "geostalls";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 3;
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender) {
+        return DeferredTranslator.translateStringOrKey(sender, "commands.earth.geostalls.usage");
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        StallWatchdog watchdog = StallWatchdog.INSTANCE;
+
+        if (args.length > 0 && args[0].equals("reset")) {
+            watchdog.reset();
+            sender.sendMessage(DeferredTranslator.translate(sender, new TextComponentTranslation("commands.earth.geostalls.reset")));
+            return;
+        }
+
+        List<String> report = watchdog.report();
+        for (String line : report.subList(0, Math.min(report.size(), REPORT_LINES + 1))) {
+            sender.sendMessage(new TextComponentString(line));
+        }
+
+        try {
+            Path path = watchdog.writeReport();
+            sender.sendMessage(DeferredTranslator.translate(sender, new TextComponentTranslation("commands.earth.geostalls.written", path.toString())));
+        } catch (IOException e) {
+            TerrariumEarth.LOGGER.warn("Failed to write stall report", e);
+        }
+    }
+
+    @Override
+    public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1) {
+            return CommandBase.getListOfStringsMatchingLastWord(args, "reset");
+        }
+        return Collections.emptyList();
+    }
+}
@@ -11,8 +11,11 @@ import net.gegy1000.earth.server.world.ecology.soil.SoilColors;
 import net.gegy1000.earth.server.world.ecology.soil.SoilSuborder;
 import net.gegy1000.earth.server.world.ecology.vegetation.Vegetation;
 import net.gegy1000.terrarium.server.capability.TerrariumWorld;
+import net.gegy1000.terrarium.server.util.Vec2i;
 import net.gegy1000.terrarium.server.world.coordinate.Coordinate;
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
+import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
 import net.gegy1000.terrarium.server.world.data.raster.EnumRaster;
 import net.gegy1000.terrarium.server.world.data.raster.FloatRaster;
@@ -24,8 +27,18 @@ import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class GeoDebugger {
+    private static final DataKey<?>[] PROFILE_KEYS = new DataKey<?>[] {
+            EarthData.ELEVATION_METERS, EarthData.COVER,
+            EarthData.MEAN_TEMPERATURE, EarthData.MIN_TEMPERATURE, EarthData.ANNUAL_RAINFALL,
+            EarthData.SOIL_SUBORDER,
+            EarthData.SILT_CONTENT, EarthData.SAND_CONTENT, EarthData.CLAY_CONTENT,
+            EarthData.ORGANIC_CARBON_CONTENT, EarthData.CATION_EXCHANGE_CAPACITY, EarthData.SOIL_PH
+    };
+
     private final TerrariumWorld terrarium;
     private final EarthWorld earth;
 
@@ -128,26 +141,37 @@ public final class GeoDebugger {
     public DebugGeoProfile[] takeTestProfiles() {
         DebugProfileTestSet.Location[] testSet = DebugProfileTestSet.get();
 
+        List<Vec2i> points = new ArrayList<>(testSet.length);
+        for (DebugProfileTestSet.Location location : testSet) {
+            Coordinate coordinate = new Coordinate(this.earth.getCrs(), location.longitude, location.latitude);
+            points.add(new Vec2i(MathHelper.floor(coordinate.getBlockX()), MathHelper.floor(coordinate.getBlockZ())));
+        }
+
+        // all test locations are queried together so that their sources load in parallel
+        List<ColumnData> data = this.terrarium.getDataCache().queryPoints(points, PROFILE_KEYS);
+
         DebugGeoProfile[] profiles = new DebugGeoProfile[testSet.length];
         for (int i = 0; i < testSet.length; i++) {
-            DebugProfileTestSet.Location location = testSet[i];
-            Coordinate coordinate = new Coordinate(this.earth.getCrs(), location.longitude, location.latitude);
-            profiles[i] = this.takeProfile(location.name, coordinate.getBlockX(), coordinate.getBlockZ());
+            Vec2i point = points.get(i);
+            profiles[i] = this.takeProfile(testSet[i].name, data.get(i), point.x, point.y);
         }
 
         return profiles;
     }
 
     public DebugGeoProfile takeProfile(String name, double x, double z) {
-        ColumnDataCache data = this.terrarium.getDataCache();
+        int bx = MathHelper.floor(x);
+        int bz = MathHelper.floor(z);
+
+        ColumnData data = this.terrarium.getDataCache().queryPoint(bx, bz, PROFILE_KEYS);
+        return this.takeProfile(name, data, bx, bz);
+    }
 
-        Coordinate coordinate = Coordinate.atBlock(x, z).to(this.earth.getCrs());
+    private DebugGeoProfile takeProfile(String name, ColumnData data, int bx, int bz) {
+        Coordinate coordinate = Coordinate.atBlock(bx, bz).to(this.earth.getCrs());
         double latitude = coordinate.getZ();
         double longitude = coordinate.getX();
 
-        int bx = MathHelper.floor(x);
-        int bz = MathHelper.floor(z);
-
         float elevation = FloatRaster.sampler(EarthData.ELEVATION_METERS).sample(data, bx, bz);
         Cover cover = EnumRaster.sampler(EarthData.COVER, Cover.NO).sample(data, bx, bz);
         float meanTemperature = FloatRaster.sampler(EarthData.MEAN_TEMPERATURE).sample(data, bx, bz);
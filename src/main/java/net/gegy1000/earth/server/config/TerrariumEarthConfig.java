@@ -26,6 +26,17 @@ public class TerrariumEarthConfig {
     @Config.Comment("If true, you will no longer be warned about remote data usage. (Automatically set through GUI)")
     public static boolean acceptedRemoteDataWarning = false;
 
+    @Config.Name("store_decoded_tiles")
+    @Config.LangKey("config.earth.store_decoded_tiles")
+    @Config.Comment("If true, decoded data tiles will be saved to disk uncompressed, so that revisited areas load faster at the cost of more disk space")
+    public static boolean storeDecodedTiles = false;
+
+    @Config.Name("decoded_tile_store_mb")
+    @Config.LangKey("config.earth.decoded_tile_store_mb")
+    @Config.Comment("The disk space in megabytes that stored decoded tiles may take up before the least recently used are deleted")
+    @Config.RangeInt(min = 64, max = 65536)
+    public static int decodedTileStoreMb = 2048;
+
     @SubscribeEvent
     public static void onConfigChanged(ConfigChangedEvent.OnConfigChangedEvent event) {
         if (event.getModID().equals(TerrariumEarth.ID)) {
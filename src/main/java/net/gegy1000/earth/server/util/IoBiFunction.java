@@ -0,0 +1,7 @@
+package net.gegy1000.earth.server.util;
+
+import java.io.IOException;
+
+public interface IoBiFunction<T, U, R> {
+    R apply(T t, U u) throws IOException;
+}
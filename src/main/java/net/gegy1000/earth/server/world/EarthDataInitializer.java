@@ -147,7 +147,7 @@ public final class EarthDataInitializer implements TerrariumDataInitializer {
         int heightOffset = this.ctx.settings.getInteger(HEIGHT_OFFSET);
         int seaLevel = heightOffset + 1;
 
-        DataOp<FloatRaster> elevation = this.elevation(worldScale).cached(FloatRaster::copy);
+        DataOp<FloatRaster> elevation = this.elevation(worldScale);
         DataOp<UByteRaster> slope = SlopeOp.from(elevation, 1.0F / (float) worldScale);
 
         DataOp<EnumRaster<Cover>> cover = this.landcover(worldScale);
@@ -161,11 +161,11 @@ public final class EarthDataInitializer implements TerrariumDataInitializer {
                 terrestrialHeightScale,
                 oceanicHeightScale,
                 heightOffset
-        ).apply(elevation).cached(ShortRaster::copy);
+        ).apply(elevation);
 
         if (worldScale <= 90.0) {
             DataOp<BitRaster> oceanMask = this.oceanMask(worldScale);
-            landforms = WaterOps.applyWaterMask(landforms, oceanMask).cached(EnumRaster::copy);
+            landforms = WaterOps.applyWaterMask(landforms, oceanMask);
         }
 
         DataOp<ShortRaster> waterLevel = WaterOps.produceWaterLevel(terrainHeight, landforms, seaLevel);
@@ -213,5 +213,11 @@ public final class EarthDataInitializer implements TerrariumDataInitializer {
         builder.put(EarthData.SILT_CONTENT, siltContent);
         builder.put(EarthData.SAND_CONTENT, sandContent);
         builder.put(EarthData.SOIL_SUBORDER, soilClass);
+
+        // only what the surface composers need is generated up-front; climate and soil predictors load on demand
+        builder.prefetch(
+                EarthData.TERRAIN_HEIGHT, EarthData.SLOPE, EarthData.COVER, EarthData.LANDFORM, EarthData.WATER_LEVEL,
+                EarthData.ORGANIC_CARBON_CONTENT, EarthData.SOIL_SUBORDER
+        );
     }
 }
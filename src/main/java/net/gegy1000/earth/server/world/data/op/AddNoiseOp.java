@@ -16,16 +16,18 @@ public final class AddNoiseOp {
     }
 
     public DataOp<FloatRaster> applyFloats(DataOp<FloatRaster> sourceOp) {
-        return sourceOp.mapBlocking((raster, view) -> {
+        return sourceOp.mapPixels((view, raster) -> {
             int minX = view.getMinX();
             int minY = view.getMinY();
-            raster.transform((source, x, y) -> {
-                double noiseX = (x + minX) * this.frequency;
+            float[] values = raster.getDataForWrite();
+            return DataOp.pixels(raster, (y, start, end) -> {
                 double noiseY = (y + minY) * this.frequency;
-                double noise = this.noise.getValue(noiseX, noiseY);
-                return source + (float) (noise * this.amplitude);
+                for (int i = start; i < end; i++) {
+                    double noiseX = (i - start + minX) * this.frequency;
+                    double noise = this.noise.getValue(noiseX, noiseY);
+                    values[i] += (float) (noise * this.amplitude);
+                }
             });
-            return raster;
         });
     }
 }
@@ -11,9 +11,13 @@ public final class OffsetValueOp {
     }
 
     public DataOp<ShortRaster> apply(DataOp<ShortRaster> heights) {
-        return heights.map((heightRaster, view) -> {
-            heightRaster.transform((source, x, y) -> (short) Math.round(source + this.offset));
-            return heightRaster;
+        return heights.mapPixels((view, heightRaster) -> {
+            short[] values = heightRaster.getDataForWrite();
+            return DataOp.pixels(heightRaster, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    values[i] = (short) Math.round(values[i] + this.offset);
+                }
+            });
         });
     }
 }
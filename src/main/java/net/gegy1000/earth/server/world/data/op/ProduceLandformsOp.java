@@ -8,19 +8,21 @@ import net.gegy1000.terrarium.server.world.data.raster.FloatRaster;
 
 public final class ProduceLandformsOp {
     public static DataOp<EnumRaster<Landform>> produce(DataOp<FloatRaster> height, DataOp<EnumRaster<Cover>> cover) {
-        return DataOp.map2(height, cover, (view, heightRaster, coverRaster) -> {
+        return DataOp.map2Pixels(height, cover, (view, heightRaster, coverRaster) -> {
             EnumRaster<Landform> landformRaster = EnumRaster.create(Landform.LAND, view);
-            coverRaster.iterate((id, x, y) -> {
-                if (heightRaster.get(x, y) <= 0.0F) {
-                    landformRaster.set(x, y, Landform.SEA);
-                } else if (id == Cover.WATER) {
-                    landformRaster.set(x, y, Landform.LAKE_OR_RIVER);
-                } else {
-                    landformRaster.set(x, y, Landform.LAND);
+            float[] heights = heightRaster.getData();
+            byte[] landforms = landformRaster.getDataForWrite();
+            return DataOp.pixels(landformRaster, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    if (heights[i] <= 0.0F) {
+                        landforms[i] = (byte) Landform.SEA.ordinal();
+                    } else if (coverRaster.get(i) == Cover.WATER) {
+                        landforms[i] = (byte) Landform.LAKE_OR_RIVER.ordinal();
+                    } else {
+                        landforms[i] = (byte) Landform.LAND.ordinal();
+                    }
                 }
             });
-
-            return landformRaster;
         });
     }
 }
@@ -13,16 +13,24 @@ public final class ScaleValueOp {
     }
 
     public DataOp<FloatRaster> applyFloat(DataOp<FloatRaster> source) {
-        return source.mapBlocking((raster, view) -> {
-            raster.transform((sourceValue, x, y) -> (float) (sourceValue * this.scale));
-            return raster;
+        return source.mapPixels((view, raster) -> {
+            float[] values = raster.getDataForWrite();
+            return DataOp.pixels(raster, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    values[i] = (float) (values[i] * this.scale);
+                }
+            });
         });
     }
 
     public DataOp<ShortRaster> applyShort(DataOp<ShortRaster> source) {
-        return source.mapBlocking((raster, view) -> {
-            raster.transform((sourceValue, x, y) -> (short) MathHelper.ceil(sourceValue * this.scale));
-            return raster;
+        return source.mapPixels((view, raster) -> {
+            short[] values = raster.getDataForWrite();
+            return DataOp.pixels(raster, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    values[i] = (short) MathHelper.ceil(values[i] * this.scale);
+                }
+            });
         });
     }
 }
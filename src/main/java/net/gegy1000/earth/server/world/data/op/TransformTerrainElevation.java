@@ -17,18 +17,20 @@ public final class TransformTerrainElevation {
     }
 
     public DataOp<ShortRaster> apply(DataOp<FloatRaster> source) {
-        return source.map((raster, view) -> {
+        return source.mapPixels((view, raster) -> {
             ShortRaster result = ShortRaster.create(view);
-            raster.iterate((elevation, x, y) -> {
-                short value;
-                if (elevation >= 0) {
-                    value = (short) (MathHelper.ceil(elevation * this.terrestrialScale) + this.offset);
-                } else {
-                    value = (short) (MathHelper.floor(elevation * this.oceanicScale) + this.offset);
+            float[] elevations = raster.getData();
+            short[] values = result.getDataForWrite();
+            return DataOp.pixels(result, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    float elevation = elevations[i];
+                    if (elevation >= 0) {
+                        values[i] = (short) (MathHelper.ceil(elevation * this.terrestrialScale) + this.offset);
+                    } else {
+                        values[i] = (short) (MathHelper.floor(elevation * this.oceanicScale) + this.offset);
+                    }
                 }
-                result.set(x, y, value);
             });
-            return result;
         });
     }
 }
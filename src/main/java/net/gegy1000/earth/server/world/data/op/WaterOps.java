@@ -2,7 +2,6 @@ package net.gegy1000.earth.server.world.data.op;
 
 import net.gegy1000.earth.server.world.cover.Cover;
 import net.gegy1000.earth.server.world.geography.Landform;
-import net.gegy1000.justnow.future.Future;
 import net.gegy1000.terrarium.server.world.data.DataOp;
 import net.gegy1000.terrarium.server.world.data.raster.BitRaster;
 import net.gegy1000.terrarium.server.world.data.raster.EnumRaster;
@@ -13,73 +12,73 @@ public final class WaterOps {
             DataOp<EnumRaster<Landform>> landforms,
             DataOp<BitRaster> ocean
     ) {
-        return DataOp.of((view, executor) -> {
-            return Future.map2(landforms.apply(view, executor), ocean.apply(view, executor), (landformOption, oceanOption) -> {
-                return landformOption.map(landformRaster -> {
-                    if (oceanOption.isPresent()) {
-                        BitRaster oceanMask = oceanOption.get();
-                        landformRaster.transform((source, x, y) -> {
-                            boolean isOcean = oceanMask.get(x, y);
-                            if (isOcean && source != Landform.SEA) return Landform.BEACH;
-                            if (!isOcean && source.isWater()) return Landform.LAND;
-                            return source;
-                        });
-                    }
-                    return landformRaster;
+        return DataOp.map2(landforms, ocean.optional(), (view, landformRaster, oceanOption) -> {
+            if (oceanOption.isPresent()) {
+                BitRaster oceanMask = oceanOption.get();
+                landformRaster.transform((source, x, y) -> {
+                    boolean isOcean = oceanMask.get(x, y);
+                    if (isOcean && source != Landform.SEA) return Landform.BEACH;
+                    if (!isOcean && source.isWater()) return Landform.LAND;
+                    return source;
                 });
-            });
+            }
+            return landformRaster;
         });
     }
 
     public static DataOp<ShortRaster> produceWaterLevel(DataOp<ShortRaster> elevation, DataOp<EnumRaster<Landform>> landforms, int seaLevel) {
-        return DataOp.map2(elevation, landforms, (view, heightRaster, landformRaster) -> {
+        return DataOp.map2Pixels(elevation, landforms, (view, heightRaster, landformRaster) -> {
             ShortRaster waterLevelRaster = ShortRaster.create(view);
+            short[] heights = heightRaster.getData();
+            short[] waterLevels = waterLevelRaster.getDataForWrite();
 
-            landformRaster.iterate((landform, x, y) -> {
-                if (landform == Landform.SEA) {
-                    waterLevelRaster.set(x, y, (short) seaLevel);
-                } else if (landform == Landform.LAKE_OR_RIVER) {
-                    waterLevelRaster.set(x, y, heightRaster.get(x, y));
-                } else {
-                    waterLevelRaster.set(x, y, Short.MIN_VALUE);
+            return DataOp.pixels(waterLevelRaster, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    Landform landform = landformRaster.get(i);
+                    if (landform == Landform.SEA) {
+                        waterLevels[i] = (short) seaLevel;
+                    } else if (landform == Landform.LAKE_OR_RIVER) {
+                        waterLevels[i] = heights[i];
+                    } else {
+                        waterLevels[i] = Short.MIN_VALUE;
+                    }
                 }
             });
-
-            return waterLevelRaster;
         });
     }
 
     public static DataOp<ShortRaster> applyToHeight(DataOp<ShortRaster> elevation, DataOp<EnumRaster<Landform>> landforms, int seaLevel) {
-        return DataOp.map2(elevation, landforms, (view, heightRaster, landformRaster) -> {
-            heightRaster.transform((source, x, y) -> {
-                Landform landform = landformRaster.get(x, y);
-                if (landform == Landform.SEA) {
-                    return (short) Math.min(source, seaLevel - 1);
-                } else if (landform == Landform.LAND && source < seaLevel) {
-                    return (short) seaLevel;
-                } else if (landform == Landform.LAKE_OR_RIVER) {
-                    return (short) (source - 1);
+        return DataOp.map2Pixels(elevation, landforms, (view, heightRaster, landformRaster) -> {
+            short[] heights = heightRaster.getDataForWrite();
+            return DataOp.pixels(heightRaster, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    short source = heights[i];
+                    Landform landform = landformRaster.get(i);
+                    if (landform == Landform.SEA) {
+                        heights[i] = (short) Math.min(source, seaLevel - 1);
+                    } else if (landform == Landform.LAND && source < seaLevel) {
+                        heights[i] = (short) seaLevel;
+                    } else if (landform == Landform.LAKE_OR_RIVER) {
+                        heights[i] = (short) (source - 1);
+                    }
                 }
-                return source;
             });
-
-            return heightRaster;
         });
     }
 
     public static DataOp<EnumRaster<Cover>> applyToCover(DataOp<EnumRaster<Cover>> cover, DataOp<EnumRaster<Landform>> landforms) {
-        return DataOp.map2(cover, landforms, (view, coverRaster, landformRaster) -> {
-            coverRaster.transform((source, x, y) -> {
-                Landform landform = landformRaster.get(x, y);
-                if (landform.isWater()) {
-                    return Cover.WATER;
-                } else if (landform.isLand() && source == Cover.WATER) {
-                    return Cover.NO;
+        return DataOp.map2Pixels(cover, landforms, (view, coverRaster, landformRaster) -> {
+            byte[] covers = coverRaster.getDataForWrite();
+            return DataOp.pixels(coverRaster, (y, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    Landform landform = landformRaster.get(i);
+                    if (landform.isWater()) {
+                        covers[i] = (byte) Cover.WATER.ordinal();
+                    } else if (landform.isLand() && coverRaster.get(i) == Cover.WATER) {
+                        covers[i] = (byte) Cover.NO.ordinal();
+                    }
                 }
-                return source;
             });
-
-            return coverRaster;
         });
     }
 }
@@ -15,14 +15,9 @@ public final class ElevationSource {
         return StdSource.<FloatRaster>builder(zoomLevels())
                 .cacheName("elevation2")
                 .endpoint("elevation2")
-                .read(input -> {
-                    ShortRaster shortRaster = TerrariumRasterReader.read(input, ShortRaster.class);
-
-                    FloatRaster result = FloatRaster.create(shortRaster.getWidth(), shortRaster.getHeight());
-                    shortRaster.iterate((value, x, y) -> result.set(x, y, value));
-
-                    return result;
-                })
+                .readDecoded(input -> TerrariumRasterReader.read(input, ShortRaster.class), ShortRaster::create, FloatRaster::copyFrom)
+                .readWindow((input, window) -> FloatRaster.copyFrom(TerrariumRasterReader.read(input, ShortRaster.class, window)))
+                .cacheQuota(0.3)
                 .build();
     }
 }
@@ -31,6 +31,8 @@ public final class LandCoverSource {
 
                     return raster;
                 })
+                .storeDecoded((width, height) -> EnumRaster.create(Cover.NO, width, height))
+                .cacheQuota(0.15)
                 .build();
     }
 }
@@ -42,6 +42,22 @@ public class OceanPolygonSource extends TiledDataSource<PolygonData> {
         super(1.0);
     }
 
+    @Override
+    public double getCacheQuota() {
+        // polygon tiles are small and cover little area, so we need many of them to cover the same view
+        return 0.1;
+    }
+
+    @Override
+    public long getByteSize(PolygonData tile) {
+        // dominated by the coordinate objects: a header and three doubles each
+        long points = 0;
+        for (MultiPolygon polygon : tile.getPolygons()) {
+            points += polygon.getNumPoints();
+        }
+        return points * 40;
+    }
+
     @Override
     public Optional<PolygonData> load(Vec2i pos) throws IOException {
         SharedEarthData sharedData = SharedEarthData.instance();
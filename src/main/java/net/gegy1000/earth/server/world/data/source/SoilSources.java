@@ -9,6 +9,9 @@ import net.gegy1000.terrarium.server.world.data.raster.ShortRaster;
 import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
 
 public final class SoilSources {
+    // there are seven soil sources sampled together, each with tiles far smaller than elevation
+    private static final double CACHE_QUOTA = 0.04;
+
     public static ZoomLevels zoomLevels() {
         return ZoomLevels.range(0, 4);
     }
@@ -18,6 +21,9 @@ public final class SoilSources {
                 .cacheName("soil/" + name)
                 .endpoint(name)
                 .read(input -> TerrariumRasterReader.read(input, ShortRaster.class))
+                .readWindow((input, window) -> TerrariumRasterReader.read(input, ShortRaster.class, window))
+                .storeDecoded(ShortRaster::create)
+                .cacheQuota(CACHE_QUOTA)
                 .build();
     }
 
@@ -26,6 +32,9 @@ public final class SoilSources {
                 .cacheName("soil/" + name)
                 .endpoint(name)
                 .read(input -> UByteRaster.copyFrom(TerrariumRasterReader.read(input, ShortRaster.class)))
+                .readWindow((input, window) -> UByteRaster.copyFrom(TerrariumRasterReader.read(input, ShortRaster.class, window)))
+                .storeDecoded(UByteRaster::create)
+                .cacheQuota(CACHE_QUOTA)
                 .build();
     }
 
@@ -72,6 +81,8 @@ public final class SoilSources {
 
                     return raster;
                 })
+                .storeDecoded((width, height) -> EnumRaster.create(SoilSuborder.NO, width, height))
+                .cacheQuota(CACHE_QUOTA)
                 .build();
     }
 }
@@ -1,21 +1,29 @@
 package net.gegy1000.earth.server.world.data.source;
 
 import net.gegy1000.earth.server.capability.EarthWorld;
+import net.gegy1000.earth.server.config.TerrariumEarthConfig;
+import net.gegy1000.earth.server.util.IoBiFunction;
 import net.gegy1000.earth.server.util.IoFunction;
 import net.gegy1000.earth.server.util.ZoomLevels;
 import net.gegy1000.earth.server.util.Zoomable;
 import net.gegy1000.earth.server.world.data.source.cache.CachingInput;
+import net.gegy1000.earth.server.world.data.source.cache.DecodedTileBudget;
+import net.gegy1000.earth.server.world.data.source.cache.DecodedTileStore;
 import net.gegy1000.earth.server.world.data.source.cache.FileTileCache;
 import net.gegy1000.terrarium.server.util.Vec2i;
 import net.gegy1000.terrarium.server.world.coordinate.CoordinateReference;
+import net.gegy1000.terrarium.server.world.data.DataView;
 import net.gegy1000.terrarium.server.world.data.source.TiledDataSource;
 import net.minecraft.util.math.MathHelper;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public final class StdSource<T> extends TiledDataSource<T> {
     public static final int TILE_SIZE = 1000;
@@ -23,27 +31,55 @@ public final class StdSource<T> extends TiledDataSource<T> {
 
     private static final String ENDPOINT = "https://terrariumearth.azureedge.net/geo3";
 
+    private static final Path DECODED_ROOT = GLOBAL_CACHE_ROOT.resolve("decoded");
+    private static final DecodedTileBudget DECODED_BUDGET = new DecodedTileBudget(
+            DECODED_ROOT,
+            () -> TerrariumEarthConfig.decodedTileStoreMb * 1024L * 1024L
+    );
+
+    private final String cacheName;
     private final IoFunction<InputStream, T> read;
+    private final IoBiFunction<InputStream, DataView, T> readWindow;
     private final String endpoint;
     private final int zoom;
+    private final double cacheQuota;
 
     private final CachingInput<Vec2i> cachingInput;
+    private final Decoded<?, T> decoded;
 
     private StdSource(
             String cacheName,
             String endpoint,
             IoFunction<InputStream, T> read,
+            @Nullable IoBiFunction<InputStream, DataView, T> readWindow,
+            @Nullable Function<Function<Vec2i, Path>, Decoded<?, T>> decoded,
+            double cacheQuota,
             int zoom
     ) {
         super(TILE_SIZE);
 
+        this.cacheName = cacheName;
         this.read = read;
+        this.readWindow = readWindow;
         this.endpoint = ENDPOINT + "/" + endpoint + "/" + zoom;
         this.zoom = zoom;
+        this.cacheQuota = cacheQuota;
 
         Path cacheRoot = GLOBAL_CACHE_ROOT.resolve(cacheName + "/" + zoom);
         FileTileCache<Vec2i> cache = new FileTileCache<>(pos -> cacheRoot.resolve(pos.x + "/" + pos.y));
         this.cachingInput = new CachingInput<>(cache);
+
+        if (decoded != null) {
+            Path decodedRoot = DECODED_ROOT.resolve(cacheName + "/" + zoom);
+            this.decoded = decoded.apply(pos -> decodedRoot.resolve(pos.x + "/" + pos.y));
+        } else {
+            this.decoded = null;
+        }
+    }
+
+    // writes out the recency of decoded tiles read since it was last saved
+    public static void flushDecodedTiles() {
+        DECODED_BUDGET.flush();
     }
 
     public static <T> Builder<T> builder(ZoomLevels zoomLevels) {
@@ -95,24 +131,100 @@ public final class StdSource<T> extends TiledDataSource<T> {
         return pos.x >= 0 && pos.y >= 0 && pos.x < tileCountX && pos.y < tileCountY;
     }
 
+    @Override
+    public double getCacheQuota() {
+        return this.cacheQuota;
+    }
+
+    // every zoom level shares the quota of its dataset
+    @Override
+    public Object getCacheFamily() {
+        return this.cacheName;
+    }
+
     @Override
     public Optional<T> load(Vec2i pos) throws IOException {
         if (!StdSource.containsTile(pos, this.zoom)) {
             return Optional.empty();
         }
 
-        String url = this.endpoint + "/" + pos.x + "/" + pos.y;
-        try (InputStream input = this.cachingInput.getInputStream(pos, p -> httpGet(new URL(url)))) {
+        if (this.decoded != null) {
+            return Optional.of(this.loadDecoded(pos, this.decoded, TerrariumEarthConfig.storeDecodedTiles));
+        }
+
+        try (InputStream input = this.openInput(pos)) {
             return Optional.of(this.read.apply(input));
         }
     }
 
+    @Override
+    public boolean canLoadWindows() {
+        return this.readWindow != null;
+    }
+
+    // windows are read from the raw tile rather than the stored decoded tile, which can only be read as a whole
+    @Override
+    public Optional<T> loadWindow(Vec2i pos, DataView window) throws IOException {
+        if (this.readWindow == null) {
+            return super.loadWindow(pos, window);
+        }
+
+        if (!StdSource.containsTile(pos, this.zoom)) {
+            return Optional.empty();
+        }
+
+        try (InputStream input = this.openInput(pos)) {
+            return Optional.of(this.readWindow.apply(input, window));
+        }
+    }
+
+    private <D> T loadDecoded(Vec2i pos, Decoded<D, T> decoded, boolean store) throws IOException {
+        if (store) {
+            D stored = decoded.store.read(pos);
+            if (stored != null) {
+                return decoded.convert.apply(stored);
+            }
+        }
+
+        D tile;
+        try (InputStream input = this.openInput(pos)) {
+            tile = decoded.read.apply(input);
+        }
+
+        if (store) {
+            decoded.store.write(pos, tile);
+        }
+
+        return decoded.convert.apply(tile);
+    }
+
+    private InputStream openInput(Vec2i pos) throws IOException {
+        String url = this.endpoint + "/" + pos.x + "/" + pos.y;
+        return this.cachingInput.getInputStream(pos, p -> httpGet(new URL(url)));
+    }
+
+    // tiles read through the raster they are decoded into, which is what gets stored on disk in place of the tile
+    private static final class Decoded<D, T> {
+        final IoFunction<InputStream, D> read;
+        final DecodedTileStore<D> store;
+        final Function<D, T> convert;
+
+        Decoded(IoFunction<InputStream, D> read, DecodedTileStore<D> store, Function<D, T> convert) {
+            this.read = read;
+            this.store = store;
+            this.convert = convert;
+        }
+    }
+
     public static class Builder<T> {
         private final ZoomLevels zoomLevels;
 
         private String cacheName;
         private IoFunction<InputStream, T> read;
+        private IoBiFunction<InputStream, DataView, T> readWindow;
+        private Function<Function<Vec2i, Path>, Decoded<?, T>> decoded;
         private String endpoint;
+        private double cacheQuota = 0.1;
 
         private Builder(ZoomLevels zoomLevels) {
             this.zoomLevels = zoomLevels;
@@ -133,8 +245,33 @@ public final class StdSource<T> extends TiledDataSource<T> {
             return this;
         }
 
+        // allows views that need only a small part of a tile to read just that window of it
+        public Builder<T> readWindow(IoBiFunction<InputStream, DataView, T> readWindow) {
+            this.readWindow = readWindow;
+            return this;
+        }
+
+        // allows decoded tiles to be stored on disk and read back into rasters created by the given function
+        public Builder<T> storeDecoded(BiFunction<Integer, Integer, T> create) {
+            this.decoded = path -> new Decoded<>(this.read, new DecodedTileStore<>(path, create, DECODED_BUDGET), Function.identity());
+            return this;
+        }
+
+        // reads tiles into a more compact raster that is converted once loaded, and that decoded tiles are stored as
+        public <D> Builder<T> readDecoded(IoFunction<InputStream, D> read, BiFunction<Integer, Integer, D> create, Function<D, T> convert) {
+            this.read = input -> convert.apply(read.apply(input));
+            this.decoded = path -> new Decoded<>(read, new DecodedTileStore<>(path, create, DECODED_BUDGET), convert);
+            return this;
+        }
+
+        // the fraction of the tile cache budget that loaded tiles from each zoom level of this source may take up
+        public Builder<T> cacheQuota(double cacheQuota) {
+            this.cacheQuota = cacheQuota;
+            return this;
+        }
+
         public Zoomable<StdSource<T>> build() {
-            return this.zoomLevels.map(zoom -> new StdSource<>(this.cacheName, this.endpoint, this.read, zoom));
+            return this.zoomLevels.map(zoom -> new StdSource<>(this.cacheName, this.endpoint, this.read, this.readWindow, this.decoded, this.cacheQuota, zoom));
         }
     }
 }
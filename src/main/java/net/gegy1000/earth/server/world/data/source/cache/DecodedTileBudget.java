@@ -0,0 +1,156 @@
+package net.gegy1000.earth.server.world.data.source.cache;
+
+import net.gegy1000.terrarium.Terrarium;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// keeps the decoded tiles stored under a directory within a disk budget, deleting the least recently used tiles once a
+// write takes them over it. the directory is scanned when first used, ordering the tiles already there by their
+// modification time. reads are only tracked in memory, and are written out as modification times when tiles are
+// evicted or the budget is flushed, so that the order carries over between sessions without a write for every read
+public final class DecodedTileBudget {
+    private final Path root;
+    private final LongSupplier budget;
+
+    private final LinkedHashMap<Path, Long> files = new LinkedHashMap<>(64, 0.75F, true);
+    private long bytes;
+    private boolean scanned;
+
+    private final Map<Path, Long> unsavedReads = new HashMap<>();
+
+    public DecodedTileBudget(Path root, LongSupplier budget) {
+        this.root = root;
+        this.budget = budget;
+    }
+
+    synchronized void onRead(Path path) {
+        this.scan();
+        if (this.files.get(path) != null) {
+            this.unsavedReads.put(path, System.currentTimeMillis());
+        }
+    }
+
+    public synchronized void flush() {
+        for (Map.Entry<Path, Long> entry : this.unsavedReads.entrySet()) {
+            try {
+                Files.setLastModifiedTime(entry.getKey(), FileTime.fromMillis(entry.getValue()));
+            } catch (IOException ignored) {
+            }
+        }
+        this.unsavedReads.clear();
+    }
+
+    synchronized void onWrite(Path path, long size) {
+        this.scan();
+
+        Long previous = this.files.put(path, size);
+        if (previous != null) {
+            this.bytes -= previous;
+        }
+        this.bytes += size;
+        this.unsavedReads.remove(path);
+
+        this.evict(path);
+    }
+
+    synchronized void onDelete(Path path) {
+        this.unsavedReads.remove(path);
+        Long previous = this.files.remove(path);
+        if (previous != null) {
+            this.bytes -= previous;
+        }
+    }
+
+    private void evict(Path keep) {
+        long budget = this.budget.getAsLong();
+        if (this.bytes <= budget) {
+            return;
+        }
+
+        Iterator<Map.Entry<Path, Long>> iterator = this.files.entrySet().iterator();
+        while (this.bytes > budget && iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+
+            try {
+                Files.deleteIfExists(entry.getKey());
+            } catch (IOException e) {
+                Terrarium.LOGGER.warn("Failed to delete decoded tile at {}", entry.getKey(), e);
+                continue;
+            }
+
+            this.bytes -= entry.getValue();
+            this.unsavedReads.remove(entry.getKey());
+            iterator.remove();
+        }
+
+        this.flush();
+    }
+
+    private void scan() {
+        if (this.scanned) {
+            return;
+        }
+        this.scanned = true;
+
+        if (!Files.isDirectory(this.root)) {
+            return;
+        }
+
+        List<Tracked> found = new ArrayList<>();
+        try {
+            Files.walkFileTree(this.root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && !file.getFileName().toString().endsWith(".tmp")) {
+                        found.add(new Tracked(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            Terrarium.LOGGER.warn("Failed to scan decoded tiles in {}", this.root, e);
+        }
+
+        found.sort(Comparator.comparingLong(tracked -> tracked.lastUsed));
+        for (Tracked tracked : found) {
+            this.files.put(tracked.path, tracked.size);
+            this.bytes += tracked.size;
+        }
+
+        this.evict(null);
+    }
+
+    private static class Tracked {
+        final Path path;
+        final long size;
+        final long lastUsed;
+
+        Tracked(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
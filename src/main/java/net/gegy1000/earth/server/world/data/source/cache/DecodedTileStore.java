@@ -0,0 +1,239 @@
+package net.gegy1000.earth.server.world.data.source.cache;
+
+import net.gegy1000.terrarium.Terrarium;
+import net.gegy1000.terrarium.server.util.Vec2i;
+import net.gegy1000.terrarium.server.world.data.raster.AbstractRaster;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// stores fully decoded rasters on disk in a raw fixed layout: a small header followed by the raster's data array. tiles
+// are read from their channel straight into the array of their raster, so that revisiting an area costs a page-cache
+// hit rather than decompressing and unfiltering the tile again. stored tiles are kept within the given disk budget
+public final class DecodedTileStore<T> {
+    private static final int MAGIC = 0x54524457;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 14;
+
+    private static final byte TYPE_BYTE = 1;
+    private static final byte TYPE_SHORT = 2;
+    private static final byte TYPE_CHAR = 3;
+    private static final byte TYPE_FLOAT = 4;
+
+    private static final int TRANSFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> TRANSFER_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(TRANSFER_SIZE));
+
+    private final Function<Vec2i, Path> pathFunction;
+    private final BiFunction<Integer, Integer, T> create;
+    private final DecodedTileBudget budget;
+
+    public DecodedTileStore(Function<Vec2i, Path> pathFunction, BiFunction<Integer, Integer, T> create, DecodedTileBudget budget) {
+        this.pathFunction = pathFunction;
+        this.create = create;
+        this.budget = budget;
+    }
+
+    @Nullable
+    public T read(Vec2i pos) {
+        Path path = this.pathFunction.apply(pos);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            T raster = this.readNow(path);
+            if (raster == null) {
+                Files.deleteIfExists(path);
+                this.budget.onDelete(path);
+            } else {
+                this.budget.onRead(path);
+            }
+            return raster;
+        } catch (IOException e) {
+            Terrarium.LOGGER.warn("Failed to read decoded tile at {}", path, e);
+            return null;
+        }
+    }
+
+    public void write(Vec2i pos, T tile) {
+        if (!(tile instanceof AbstractRaster)) {
+            return;
+        }
+
+        AbstractRaster<?> raster = (AbstractRaster<?>) tile;
+        Object data = raster.getData();
+        byte type = getType(data);
+        if (type == 0) {
+            return;
+        }
+
+        Path path = this.pathFunction.apply(pos);
+
+        try {
+            Files.createDirectories(path.getParent());
+
+            // written to a temporary file first so that concurrent readers never see a partially written tile
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).put((byte) VERSION).put(type);
+                header.putInt(raster.getWidth()).putInt(raster.getHeight());
+                header.flip();
+
+                ByteBuffer body = writeData(data);
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[] { header, body });
+                }
+            }
+
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.budget.onWrite(path, Files.size(path));
+        } catch (IOException e) {
+            Terrarium.LOGGER.warn("Failed to write decoded tile at {}", path, e);
+        }
+    }
+
+    @Nullable
+    private T readNow(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(channel, header)) {
+                return null;
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.get() != VERSION) {
+                return null;
+            }
+
+            byte type = header.get();
+            int width = header.getInt();
+            int height = header.getInt();
+
+            T tile = this.create.apply(width, height);
+            if (!(tile instanceof AbstractRaster)) {
+                return null;
+            }
+
+            AbstractRaster<?> raster = (AbstractRaster<?>) tile;
+            Object data = raster.getDataForWrite();
+            if (getType(data) != type || raster.getByteSize() != size - HEADER_SIZE) {
+                return null;
+            }
+
+            return readData(channel, data) ? tile : null;
+        }
+    }
+
+    private static byte getType(Object data) {
+        if (data instanceof byte[]) {
+            return TYPE_BYTE;
+        } else if (data instanceof short[]) {
+            return TYPE_SHORT;
+        } else if (data instanceof char[]) {
+            return TYPE_CHAR;
+        } else if (data instanceof float[]) {
+            return TYPE_FLOAT;
+        }
+        return 0;
+    }
+
+    private static ByteBuffer writeData(Object data) {
+        if (data instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) data);
+        } else if (data instanceof short[]) {
+            short[] array = (short[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * Short.BYTES);
+            buffer.asShortBuffer().put(array);
+            return buffer;
+        } else if (data instanceof char[]) {
+            char[] array = (char[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * Character.BYTES);
+            buffer.asCharBuffer().put(array);
+            return buffer;
+        } else {
+            float[] array = (float[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * Float.BYTES);
+            buffer.asFloatBuffer().put(array);
+            return buffer;
+        }
+    }
+
+    // byte arrays are read into directly. wider arrays are read through a reused direct buffer and bulk-copied from it
+    // in pieces, so that reading a tile never allocates a copy of it. not memory-mapped: a mapping lingers until it is
+    // collected, and on windows keeps the file from being replaced or deleted until then
+    private static boolean readData(FileChannel channel, Object data) throws IOException {
+        if (data instanceof byte[]) {
+            return readFully(channel, ByteBuffer.wrap((byte[]) data));
+        }
+
+        ByteBuffer transfer = TRANSFER_BUFFER.get();
+        int length = getLength(data);
+        int elementBytes = getElementBytes(data);
+
+        int offset = 0;
+        while (offset < length) {
+            int count = Math.min(length - offset, TRANSFER_SIZE / elementBytes);
+            transfer.clear();
+            transfer.limit(count * elementBytes);
+            if (!readFully(channel, transfer)) {
+                return false;
+            }
+            transfer.flip();
+
+            if (data instanceof short[]) {
+                transfer.asShortBuffer().get((short[]) data, offset, count);
+            } else if (data instanceof char[]) {
+                transfer.asCharBuffer().get((char[]) data, offset, count);
+            } else {
+                transfer.asFloatBuffer().get((float[]) data, offset, count);
+            }
+
+            offset += count;
+        }
+
+        return true;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getLength(Object data) {
+        if (data instanceof short[]) {
+            return ((short[]) data).length;
+        } else if (data instanceof char[]) {
+            return ((char[]) data).length;
+        } else {
+            return ((float[]) data).length;
+        }
+    }
+
+    private static int getElementBytes(Object data) {
+        if (data instanceof short[]) {
+            return Short.BYTES;
+        } else if (data instanceof char[]) {
+            return Character.BYTES;
+        } else {
+            return Float.BYTES;
+        }
+    }
+}
@@ -1,69 +1,71 @@
 package net.gegy1000.earth.server.world.data.source.reader;
 
-import net.gegy1000.terrarium.server.world.data.raster.IntegerRaster;
-import net.gegy1000.terrarium.server.world.data.raster.Raster;
-
 public enum RasterFilter {
-    NONE {
-        @Override
-        public int apply(int x, int a, int b, int c) {
-            return x;
-        }
+    NONE,
+    LEFT,
+    UP,
+    AVERAGE,
+    PAETH;
 
-        @Override
-        public <T extends IntegerRaster<?>> void apply(T input, T output) {
-            Raster.rasterCopy(input, output);
-        }
-    },
-    LEFT {
-        @Override
-        public int apply(int x, int a, int b, int c) {
-            return x + a;
-        }
-    },
-    UP {
-        @Override
-        public int apply(int x, int a, int b, int c) {
-            return x + b;
-        }
-    },
-    AVERAGE {
-        @Override
-        public int apply(int x, int a, int b, int c) {
-            return x + (a + b) / 2;
-        }
-    },
-    PAETH {
-        @Override
-        public int apply(int x, int a, int b, int c) {
-            int p = a + b - c;
-            int deltaA = Math.abs(a - p);
-            int deltaB = Math.abs(b - p);
-            int deltaC = Math.abs(c - p);
-            if (deltaA < deltaB && deltaA < deltaC) {
-                return x + a;
-            } else if (deltaB < deltaC) {
-                return x + b;
-            } else {
-                return x + c;
+    // reverses this filter over a row of samples in place, given the previous unfiltered row, or zeros for the first.
+    // every sample is wrapped to the range of its format as it is produced, since later samples are predicted from it
+    public void unfilterRow(int[] row, int[] previous, int width, int shift, boolean signed) {
+        switch (this) {
+            case NONE:
+                return;
+            case LEFT: {
+                int a = 0;
+                for (int x = 0; x < width; x++) {
+                    a = wrap(row[x] + a, shift, signed);
+                    row[x] = a;
+                }
+                return;
+            }
+            case UP: {
+                for (int x = 0; x < width; x++) {
+                    row[x] = wrap(row[x] + previous[x], shift, signed);
+                }
+                return;
+            }
+            case AVERAGE: {
+                int a = 0;
+                for (int x = 0; x < width; x++) {
+                    a = wrap(row[x] + (a + previous[x]) / 2, shift, signed);
+                    row[x] = a;
+                }
+                return;
+            }
+            case PAETH: {
+                int a = 0;
+                int c = 0;
+                for (int x = 0; x < width; x++) {
+                    int b = previous[x];
+                    a = wrap(row[x] + paeth(a, b, c), shift, signed);
+                    row[x] = a;
+                    c = b;
+                }
             }
         }
-    };
-
-    public abstract int apply(int x, int a, int b, int c);
+    }
 
-    public <T extends IntegerRaster<?>> void apply(T input, T output) {
-        for (int y = 0; y < input.getHeight(); y++) {
-            for (int x = 0; x < input.getWidth(); x++) {
-                int value = input.getInt(x, y);
-                int a = x > 0 ? output.getInt(x - 1, y) : 0;
-                int b = y > 0 ? output.getInt(x, y - 1) : 0;
-                int c = x > 0 && y > 0 ? output.getInt(x - 1, y - 1) : 0;
-                output.setInt(x, y, this.apply(value, a, b, c));
-            }
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int deltaA = Math.abs(a - p);
+        int deltaB = Math.abs(b - p);
+        int deltaC = Math.abs(c - p);
+        if (deltaA < deltaB && deltaA < deltaC) {
+            return a;
+        } else if (deltaB < deltaC) {
+            return b;
+        } else {
+            return c;
         }
     }
 
+    private static int wrap(int value, int shift, boolean signed) {
+        return signed ? value << shift >> shift : value << shift >>> shift;
+    }
+
     public static RasterFilter byId(int id) {
         switch (id) {
             case 1: return LEFT;
@@ -6,52 +6,33 @@ import net.gegy1000.terrarium.server.world.data.raster.IntegerRaster;
 import net.gegy1000.terrarium.server.world.data.raster.ShortRaster;
 import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
 
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 import java.util.Optional;
 import java.util.function.Function;
 
 class RasterFormat<T extends IntegerRaster<?>> {
-    static final RasterFormat<UByteRaster> UBYTE = new RasterFormat<>(UByteRaster.class, UByteRaster::create, (input, width, height) -> {
-        byte[] bytes = new byte[width * height];
-        new DataInputStream(input).readFully(bytes);
-        return UByteRaster.wrap(bytes, width, height);
-    });
-
-    static final RasterFormat<ByteRaster> BYTE = new RasterFormat<>(ByteRaster.class, ByteRaster::create, (input, width, height) -> {
-        byte[] bytes = new byte[width * height];
-        new DataInputStream(input).readFully(bytes);
-        return ByteRaster.wrap(bytes, width, height);
-    });
-
-    static final RasterFormat<ShortRaster> SHORT = new RasterFormat<>(ShortRaster.class, ShortRaster::create, (input, width, height) -> {
-        DataInputStream dataIn = new DataInputStream(input);
-        short[] values = new short[width * height];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = dataIn.readShort();
-        }
-        return ShortRaster.wrap(values, width, height);
-    });
+    static final RasterFormat<UByteRaster> UBYTE = new RasterFormat<>(UByteRaster.class, UByteRaster::create, Samples.UBYTE);
+    static final RasterFormat<ByteRaster> BYTE = new RasterFormat<>(ByteRaster.class, ByteRaster::create, Samples.BYTE);
+    static final RasterFormat<ShortRaster> SHORT = new RasterFormat<>(ShortRaster.class, ShortRaster::create, Samples.SHORT);
 
     private final Class<T> type;
     private final Function<DataView, T> constructor;
-    private final RasterReader<T> reader;
+    final Samples samples;
 
-    private RasterFormat(Class<T> type, Function<DataView, T> constructor, RasterReader<T> reader) {
+    private RasterFormat(Class<T> type, Function<DataView, T> constructor, Samples samples) {
         this.type = type;
         this.constructor = constructor;
-        this.reader = reader;
+        this.samples = samples;
     }
 
     T create(DataView view) {
         return this.constructor.apply(view);
     }
 
-    T read(InputStream input, int width, int height) throws IOException {
-        return this.reader.read(input, width, height);
-    }
-
     @SuppressWarnings("unchecked")
     <R extends IntegerRaster<?>> Optional<RasterFormat<R>> tryCast(Class<R> type) {
         if (!type.isAssignableFrom(this.type)) return Optional.empty();
@@ -67,7 +48,80 @@ class RasterFormat<T extends IntegerRaster<?>> {
         }
     }
 
-    interface RasterReader<T extends IntegerRaster<?>> {
-        T read(InputStream input, int width, int height) throws IOException;
+    // how samples of a format are read from a stream and stored into their raster's array. samples are handled as ints
+    // while unfiltering, wrapped to the same range that storing them into the raster would wrap them to
+    enum Samples {
+        UBYTE(Byte.BYTES, 24, false),
+        BYTE(Byte.BYTES, 24, true),
+        SHORT(Short.BYTES, 16, true);
+
+        final int bytes;
+        final int shift;
+        final boolean signed;
+
+        Samples(int bytes, int shift, boolean signed) {
+            this.bytes = bytes;
+            this.shift = shift;
+            this.signed = signed;
+        }
+
+        void readRow(InputStream input, byte[] buffer, short[] shorts, int[] row, int width) throws IOException {
+            readFully(input, buffer, width * this.bytes);
+
+            switch (this) {
+                case UBYTE:
+                    for (int x = 0; x < width; x++) {
+                        row[x] = buffer[x] & 0xFF;
+                    }
+                    break;
+                case BYTE:
+                    for (int x = 0; x < width; x++) {
+                        row[x] = buffer[x];
+                    }
+                    break;
+                case SHORT:
+                    ByteBuffer.wrap(buffer, 0, width * Short.BYTES).asShortBuffer().get(shorts, 0, width);
+                    for (int x = 0; x < width; x++) {
+                        row[x] = shorts[x];
+                    }
+                    break;
+            }
+        }
+
+        // reads a row that needs no unfiltering in bulk, straight into the raster's array
+        void readRowInto(InputStream input, byte[] buffer, int width, int offset, Object data, int index, int length) throws IOException {
+            readFully(input, buffer, width * this.bytes);
+
+            if (this == SHORT) {
+                ShortBuffer shorts = ByteBuffer.wrap(buffer, 0, width * Short.BYTES).asShortBuffer();
+                shorts.position(offset);
+                shorts.get((short[]) data, index, length);
+            } else {
+                System.arraycopy(buffer, offset, data, index, length);
+            }
+        }
+
+        void storeRow(int[] row, int offset, Object data, int index, int length) {
+            if (this == SHORT) {
+                short[] shorts = (short[]) data;
+                for (int i = 0; i < length; i++) {
+                    shorts[index + i] = (short) row[offset + i];
+                }
+            } else {
+                byte[] bytes = (byte[]) data;
+                for (int i = 0; i < length; i++) {
+                    bytes[index + i] = (byte) row[offset + i];
+                }
+            }
+        }
+
+        private static void readFully(InputStream input, byte[] buffer, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                int count = input.read(buffer, offset, length - offset);
+                if (count < 0) throw new EOFException();
+                offset += count;
+            }
+        }
     }
 }
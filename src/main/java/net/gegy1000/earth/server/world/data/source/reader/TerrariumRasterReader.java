@@ -1,20 +1,45 @@
 package net.gegy1000.earth.server.world.data.source.reader;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.gegy1000.terrarium.server.world.data.DataView;
 import net.gegy1000.terrarium.server.world.data.raster.IntegerRaster;
-import net.gegy1000.terrarium.server.world.data.raster.Raster;
 import org.tukaani.xz.SingleXZInputStream;
 
+import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class TerrariumRasterReader {
     private static final String SIGNATURE = "TERRARIUM/RASTER";
 
+    // chunks are compressed and filtered independently, so they can be decoded in parallel by a shared pool
+    private static final ExecutorService DECODE_SERVICE = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8)),
+            new ThreadFactoryBuilder()
+                    .setNameFormat("terrarium-raster-decoder-%s")
+                    .setDaemon(true)
+                    .build()
+    );
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     public static <T extends IntegerRaster<?>> T read(InputStream input, Class<T> rasterType) throws IOException {
+        return read(input, rasterType, null);
+    }
+
+    // reads only the given window of the raster, skipping the decompression of any chunks that do not intersect it
+    public static <T extends IntegerRaster<?>> T read(InputStream input, Class<T> rasterType, @Nullable DataView window) throws IOException {
         DataInputStream dataIn = new DataInputStream(input);
 
         byte[] signature = new byte[SIGNATURE.length()];
@@ -24,53 +49,225 @@ public final class TerrariumRasterReader {
 
         int version = dataIn.readUnsignedByte();
         if (version == 0) {
-            return readV0(dataIn, rasterType);
+            return readV0(dataIn, rasterType, window);
+        } else if (version == 1) {
+            return readV1(dataIn, rasterType, window);
         } else {
             throw new IOException("Unknown data version " + version);
         }
     }
 
-    private static <T extends IntegerRaster<?>> T readV0(InputStream input, Class<T> expectedRasterType) throws IOException {
-        DataInputStream dataIn = new DataInputStream(input);
+    private static <T extends IntegerRaster<?>> T readV0(DataInputStream dataIn, Class<T> expectedRasterType, @Nullable DataView window) throws IOException {
         int width = dataIn.readInt();
         int height = dataIn.readInt();
+        RasterFormat<T> byteFormat = readFormat(dataIn, expectedRasterType);
 
-        RasterFormat<T> byteFormat = RasterFormat.byId(dataIn.readUnsignedByte())
-                .flatMap(format -> format.tryCast(expectedRasterType))
-                .orElseThrow(() -> new IOException("Expected raster of type " + expectedRasterType));
-
-        T raster = byteFormat.create(DataView.rect(width, height));
+        DataView dstView = window != null ? window : DataView.rect(width, height);
+        T raster = byteFormat.create(DataView.rect(dstView.getWidth(), dstView.getHeight()));
 
+        // v0 has no index, so every chunk must be read through, but only the intersecting ones are decompressed
+        List<Callable<Void>> decodeTasks = new ArrayList<>();
         while (dataIn.available() > 0) {
             int chunkLength = dataIn.readInt();
             byte[] chunkBytes = new byte[chunkLength];
             dataIn.readFully(chunkBytes);
 
-            readChunkV0(new ByteArrayInputStream(chunkBytes), raster, byteFormat);
+            DataInputStream chunkIn = new DataInputStream(new ByteArrayInputStream(chunkBytes));
+            Chunk chunk = Chunk.read(chunkIn);
+            if (chunk.view.intersects(dstView)) {
+                decodeTasks.add(() -> {
+                    readChunk(chunkIn, chunk, raster, dstView, byteFormat);
+                    return null;
+                });
+            }
+        }
+
+        decodeAll(decodeTasks);
+
+        return raster;
+    }
+
+    // v1 stores an index of every chunk ahead of the chunk data, so that the end of the raster is known from its header
+    // rather than from the stream running dry, which a piped stream can do before the data has all arrived. with the
+    // index, chunks outside of the window are skipped without being read
+    private static <T extends IntegerRaster<?>> T readV1(DataInputStream dataIn, Class<T> expectedRasterType, @Nullable DataView window) throws IOException {
+        int width = dataIn.readInt();
+        int height = dataIn.readInt();
+        RasterFormat<T> byteFormat = readFormat(dataIn, expectedRasterType);
+
+        DataView dstView = window != null ? window : DataView.rect(width, height);
+        T raster = byteFormat.create(DataView.rect(dstView.getWidth(), dstView.getHeight()));
+
+        int chunkCount = dataIn.readInt();
+        List<Chunk> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = Chunk.read(dataIn);
+            chunk.length = dataIn.readInt();
+            chunks.add(chunk);
+        }
+
+        List<Callable<Void>> decodeTasks = new ArrayList<>();
+        long skipped = 0;
+        for (Chunk chunk : chunks) {
+            if (!chunk.view.intersects(dstView)) {
+                skipped += chunk.length;
+                continue;
+            }
+
+            skipFully(dataIn, skipped);
+            skipped = 0;
+
+            byte[] chunkBytes = new byte[chunk.length];
+            dataIn.readFully(chunkBytes);
+            decodeTasks.add(() -> {
+                readChunk(new ByteArrayInputStream(chunkBytes), chunk, raster, dstView, byteFormat);
+                return null;
+            });
         }
 
+        // the chunks after the last intersecting one are still read through rather than left in the stream: a caching
+        // input only keeps a download that has been read to its end
+        skipFully(dataIn, skipped);
+
+        decodeAll(decodeTasks);
+
         return raster;
     }
 
-    private static <T extends IntegerRaster<?>> void readChunkV0(
+    private static <T extends IntegerRaster<?>> RasterFormat<T> readFormat(DataInputStream dataIn, Class<T> expectedRasterType) throws IOException {
+        return RasterFormat.byId(dataIn.readUnsignedByte())
+                .flatMap(format -> format.tryCast(expectedRasterType))
+                .orElseThrow(() -> new IOException("Expected raster of type " + expectedRasterType));
+    }
+
+    private static <T extends IntegerRaster<?>> void readChunk(
             InputStream input,
+            Chunk chunk,
             T dstRaster,
+            DataView dstView,
             RasterFormat<T> rasterFormat
     ) throws IOException {
-        DataInputStream dataIn = new DataInputStream(input);
-        int chunkX = dataIn.readInt();
-        int chunkY = dataIn.readInt();
-        int chunkWidth = dataIn.readInt();
-        int chunkHeight = dataIn.readInt();
-        RasterFilter filter = RasterFilter.byId(dataIn.readUnsignedByte());
+        DataView srcView = chunk.view;
+        RasterFormat.Samples samples = rasterFormat.samples;
+
+        int width = srcView.getWidth();
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(width * samples.bytes);
+
+        int[] row = scratch.row;
+        int[] previous = scratch.previous;
+        Arrays.fill(previous, 0, width, 0);
+
+        // rows are unfiltered one at a time and written straight into the destination, skipping any outside the window
+        int minX = Math.max(srcView.getMinX(), dstView.getMinX());
+        int maxX = Math.min(srcView.getMaxX(), dstView.getMaxX());
+        int maxY = Math.min(srcView.getMaxY(), dstView.getMaxY());
+
+        Object dstData = dstRaster.getDataForWrite();
+        InputStream samplesIn = new SingleXZInputStream(input);
+
+        if (chunk.filter == RasterFilter.NONE) {
+            for (int y = srcView.getMinY(); y < maxY; y++) {
+                if (y >= dstView.getMinY() && minX < maxX) {
+                    int dstIndex = (minX - dstView.getMinX()) + (y - dstView.getMinY()) * dstView.getWidth();
+                    samples.readRowInto(samplesIn, scratch.bytes, width, minX - srcView.getMinX(), dstData, dstIndex, maxX - minX);
+                } else {
+                    samples.readRowInto(samplesIn, scratch.bytes, width, 0, dstData, 0, 0);
+                }
+            }
+            return;
+        }
+
+        for (int y = srcView.getMinY(); y < maxY; y++) {
+            samples.readRow(samplesIn, scratch.bytes, scratch.shorts, row, width);
+            chunk.filter.unfilterRow(row, previous, width, samples.shift, samples.signed);
 
-        DataView srcView = DataView.rect(chunkX, chunkY, chunkWidth, chunkHeight);
-        DataView dstView = dstRaster.asView();
+            if (y >= dstView.getMinY() && minX < maxX) {
+                int dstIndex = (minX - dstView.getMinX()) + (y - dstView.getMinY()) * dstView.getWidth();
+                samples.storeRow(row, minX - srcView.getMinX(), dstData, dstIndex, maxX - minX);
+            }
 
-        T rawRaster = rasterFormat.read(new SingleXZInputStream(input), chunkWidth, chunkHeight);
-        T filteredRaster = rasterFormat.create(srcView);
-        filter.apply(rawRaster, filteredRaster);
+            int[] swap = row;
+            row = previous;
+            previous = swap;
+        }
+    }
 
-        Raster.rasterCopy(filteredRaster, srcView, dstRaster, dstView);
+    // chunks never overlap, so each task can copy into its own part of the destination raster without synchronization
+    private static void decodeAll(List<Callable<Void>> tasks) throws IOException {
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+                return;
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Failed to decode raster chunk", e);
+            }
+        }
+
+        try {
+            for (Future<Void> result : DECODE_SERVICE.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding raster chunks", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to decode raster chunk", cause);
+        }
+    }
+
+    private static void skipFully(DataInputStream dataIn, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = dataIn.skip(remaining);
+            if (skipped <= 0) {
+                if (dataIn.read() == -1) throw new EOFException();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    // row buffers reused by every chunk decoded on the same thread
+    private static class Scratch {
+        byte[] bytes = new byte[0];
+        short[] shorts = new short[0];
+        int[] row = new int[0];
+        int[] previous = new int[0];
+
+        void ensureCapacity(int byteCount) {
+            if (this.bytes.length < byteCount) {
+                this.bytes = new byte[byteCount];
+                this.shorts = new short[byteCount];
+                this.row = new int[byteCount];
+                this.previous = new int[byteCount];
+            }
+        }
+    }
+
+    private static class Chunk {
+        final DataView view;
+        final RasterFilter filter;
+        int length;
+
+        Chunk(DataView view, RasterFilter filter) {
+            this.view = view;
+            this.filter = filter;
+        }
+
+        static Chunk read(DataInputStream dataIn) throws IOException {
+            int chunkX = dataIn.readInt();
+            int chunkY = dataIn.readInt();
+            int chunkWidth = dataIn.readInt();
+            int chunkHeight = dataIn.readInt();
+            RasterFilter filter = RasterFilter.byId(dataIn.readUnsignedByte());
+            return new Chunk(DataView.rect(chunkX, chunkY, chunkWidth, chunkHeight), filter);
+        }
     }
 }
@@ -4,8 +4,7 @@ import net.gegy1000.terrarium.server.ServerProxy;
 import net.gegy1000.terrarium.server.capability.TerrariumCapabilities;
 import net.gegy1000.terrarium.server.message.DataFailWarningMessage;
 import net.gegy1000.terrarium.server.message.TerrariumHandshakeMessage;
-import net.gegy1000.terrarium.server.world.chunk.tracker.SavedColumnTracker;
-import net.gegy1000.terrarium.server.world.chunk.tracker.SavedCubeTracker;
+import net.gegy1000.terrarium.server.world.chunk.tracker.CubeWatchListener;
 import net.gegy1000.terrarium.server.world.generator.customization.TerrariumPresetRegistry;
 import net.gegy1000.terrarium.server.world.data.source.TiledDataSource;
 import net.minecraftforge.common.MinecraftForge;
@@ -55,15 +54,13 @@ public class Terrarium {
         NETWORK.registerMessage(TerrariumHandshakeMessage.Handler.class, TerrariumHandshakeMessage.class, 1, Side.CLIENT);
         NETWORK.registerMessage(DataFailWarningMessage.Handler.class, DataFailWarningMessage.class, 3, Side.CLIENT);
 
-        MinecraftForge.EVENT_BUS.register(SavedColumnTracker.class);
-
         if (Loader.isModLoaded("cubicchunks")) {
             registerCubicChunksEvents();
         }
     }
 
     private static void registerCubicChunksEvents() {
-        MinecraftForge.EVENT_BUS.register(SavedCubeTracker.class);
+        MinecraftForge.EVENT_BUS.register(CubeWatchListener.class);
     }
 
     @Mod.EventHandler
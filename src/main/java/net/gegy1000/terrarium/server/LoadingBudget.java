@@ -0,0 +1,55 @@
+package net.gegy1000.terrarium.server;
+
+import net.gegy1000.terrarium.server.config.TerrariumConfig;
+
+final class LoadingBudget {
+    private static final long TICK_NANOS = 50 * 1000000;
+
+    private long tickStart;
+    private long lastTickNanos;
+
+    private long loadingNanos;
+    private long lastLoadingNanos;
+
+    private long smoothedBudget = -1;
+    private long tickBudget;
+
+    // the budget is computed once per tick and then shared by every world loading within it, so that loading in
+    // several worlds does not take any more time than loading in one
+    void startTick() {
+        this.tickStart = System.nanoTime();
+        this.tickBudget = this.computeBudget();
+    }
+
+    void endTick() {
+        this.lastTickNanos = System.nanoTime() - this.tickStart;
+        this.lastLoadingNanos = this.loadingNanos;
+        this.loadingNanos = 0;
+    }
+
+    void recordLoading(long nanos) {
+        this.loadingNanos += nanos;
+    }
+
+    // the loading time left in the current tick
+    long getRemaining() {
+        return Math.max(this.tickBudget - this.loadingNanos, 0);
+    }
+
+    // gives half of the time that the rest of the last tick left over, so that there is still headroom if the next
+    // tick is slower. the budget is smoothed to not follow single slow ticks
+    private long computeBudget() {
+        long otherWork = Math.max(this.lastTickNanos - this.lastLoadingNanos, 0);
+        long budget = Math.max(TICK_NANOS - otherWork, 0) / 2;
+
+        if (this.smoothedBudget < 0) {
+            this.smoothedBudget = budget;
+        } else {
+            this.smoothedBudget = (this.smoothedBudget * 3 + budget) / 4;
+        }
+
+        long min = (long) (TerrariumConfig.minLoadingTimeMs * 1000000);
+        long max = (long) (TerrariumConfig.maxLoadingTimeMs * 1000000);
+        return Math.max(Math.min(this.smoothedBudget, max), min);
+    }
+}
@@ -8,24 +8,29 @@ import net.gegy1000.terrarium.server.capability.TerrariumWorld;
 import net.gegy1000.terrarium.server.world.TerrariumWorldType;
 import net.gegy1000.terrarium.server.world.coordinate.Coordinate;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
+import net.gegy1000.terrarium.server.world.data.StallWatchdog;
 import net.gegy1000.terrarium.server.world.data.source.DataSourceReader;
 import net.minecraft.world.DimensionType;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.capabilities.ICapabilityProvider;
 import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 
+import java.io.IOException;
 import java.util.Collection;
 
 @Mod.EventBusSubscriber(modid = Terrarium.ID)
 public class ServerEventHandler {
-    private static final long DATA_TRACK_INTERVAL = 2000;
-    private static long lastDataTrackTime;
+    private static final long DATA_PRIORITIZE_INTERVAL = 2000;
+    private static long lastDataPrioritizeTime;
+
+    private static final LoadingBudget LOADING_BUDGET = new LoadingBudget();
 
     @SubscribeEvent(priority = EventPriority.LOWEST)
     public static void onWorldLoad(WorldEvent.Load event) {
@@ -49,6 +54,15 @@ public class ServerEventHandler {
             if (worldData != null) {
                 worldData.getDataCache().close();
                 DataSourceReader.INSTANCE.clear();
+
+                // a report is only worth writing once something has stalled the server thread
+                if (StallWatchdog.INSTANCE.hasStalls()) {
+                    try {
+                        StallWatchdog.INSTANCE.writeReport();
+                    } catch (IOException e) {
+                        Terrarium.LOGGER.warn("Failed to write stall report", e);
+                    }
+                }
             }
         }
     }
@@ -78,6 +92,15 @@ public class ServerEventHandler {
         }
     }
 
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            LOADING_BUDGET.startTick();
+        } else {
+            LOADING_BUDGET.endTick();
+        }
+    }
+
     @SubscribeEvent
     public static void onWorldTick(TickEvent.WorldTickEvent event) {
         World world = event.world;
@@ -85,15 +108,30 @@ public class ServerEventHandler {
             TerrariumWorld terrarium = TerrariumWorld.get(world);
             if (terrarium == null) return;
 
-            // advance loading for up to 2ms
             ColumnDataCache dataCache = terrarium.getDataCache();
-            dataCache.advanceLoadingFor(2 * 1000000);
+
+            long loadingStart = System.nanoTime();
+            dataCache.advanceLoadingFor(LOADING_BUDGET.getRemaining());
+            LOADING_BUDGET.recordLoading(System.nanoTime() - loadingStart);
+
+            dataCache.trackColumns();
 
             long time = System.currentTimeMillis();
-            if (time - lastDataTrackTime > DATA_TRACK_INTERVAL) {
+            if (time - lastDataPrioritizeTime > DATA_PRIORITIZE_INTERVAL) {
                 dataCache.dropColumns();
-                dataCache.trackColumns();
-                lastDataTrackTime = time;
+                dataCache.prioritizeColumns();
+                lastDataPrioritizeTime = time;
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        World world = event.getWorld();
+        if (!world.isRemote && ServerEventHandler.shouldHandle(world)) {
+            TerrariumWorld terrarium = TerrariumWorld.get(world);
+            if (terrarium != null) {
+                terrarium.getDataCache().onColumnLoaded(event.getChunk().getPos());
             }
         }
     }
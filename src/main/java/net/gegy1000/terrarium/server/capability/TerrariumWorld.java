@@ -72,7 +72,7 @@ public interface TerrariumWorld extends ICapabilityProvider {
             MinecraftForge.EVENT_BUS.post(new TerrariumInitializeDataEvent(world, worldType, this.settings, dataGenerator));
 
             this.dataGenerator = dataGenerator.build();
-            this.dataCache = new ColumnDataCache(world, this.dataGenerator);
+            this.dataCache = new ColumnDataCache(world, this.settings, this.dataGenerator);
 
             CompositeTerrariumGenerator.Builder generator = CompositeTerrariumGenerator.builder();
 
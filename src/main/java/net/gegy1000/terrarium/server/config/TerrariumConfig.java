@@ -10,6 +10,56 @@ import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 @Config(modid = Terrarium.ID)
 @Mod.EventBusSubscriber(modid = Terrarium.ID)
 public class TerrariumConfig {
+    @Config.Name("data_worker_threads")
+    @Config.LangKey("config.terrarium.data_worker_threads")
+    @Config.Comment("The number of threads used to generate column data. Set to 0 to select automatically based on available processors")
+    @Config.RequiresMcRestart
+    @Config.RangeInt(min = 0, max = 64)
+    public static int dataWorkerThreads = 0;
+
+    @Config.Name("column_batch_size")
+    @Config.LangKey("config.terrarium.column_batch_size")
+    @Config.Comment("The width in columns of the square regions that column data is generated in at once. Larger values amortize generation overhead over more neighbouring columns")
+    @Config.RequiresWorldRestart
+    @Config.RangeInt(min = 1, max = 8)
+    public static int columnBatchSize = 4;
+
+    @Config.Name("min_loading_time_ms")
+    @Config.LangKey("config.terrarium.min_loading_time_ms")
+    @Config.Comment("The minimum time in milliseconds spent on the server thread each tick to advance column data loading, even when the server is overloaded")
+    @Config.RangeDouble(min = 0.0, max = 50.0)
+    public static double minLoadingTimeMs = 0.5;
+
+    @Config.Name("max_loading_time_ms")
+    @Config.LangKey("config.terrarium.max_loading_time_ms")
+    @Config.Comment("The maximum time in milliseconds spent on the server thread each tick to advance column data loading, when the tick has time to spare")
+    @Config.RangeDouble(min = 0.0, max = 50.0)
+    public static double maxLoadingTimeMs = 10.0;
+
+    @Config.Name("retained_column_memory_mb")
+    @Config.LangKey("config.terrarium.retained_column_memory_mb")
+    @Config.Comment("The memory in megabytes used to keep generated column data after players leave it, so that revisited areas do not need to be generated again. Set to 0 to disable")
+    @Config.RangeInt(min = 0, max = 4096)
+    public static int retainedColumnMemoryMb = 64;
+
+    @Config.Name("persist_column_data")
+    @Config.LangKey("config.terrarium.persist_column_data")
+    @Config.Comment("Whether generated column data should be saved to disk, so that areas generated again with the same settings are read back instead of being generated from scratch")
+    @Config.RequiresWorldRestart
+    public static boolean persistColumnData = false;
+
+    @Config.Name("tile_cache_memory_mb")
+    @Config.LangKey("config.terrarium.tile_cache_memory_mb")
+    @Config.Comment("The memory in megabytes used to keep loaded data tiles, so that neighbouring areas do not need to load them again")
+    @Config.RangeInt(min = 16, max = 8192)
+    public static int tileCacheMemoryMb = 256;
+
+    @Config.Name("off_heap_tile_cache_memory_mb")
+    @Config.LangKey("config.terrarium.off_heap_tile_cache_memory_mb")
+    @Config.Comment("The memory in megabytes outside of the java heap used to keep data tiles evicted from the tile cache. Set to 0 to disable")
+    @Config.RangeInt(min = 0, max = 16384)
+    public static int offHeapTileCacheMemoryMb = 0;
+
     @SubscribeEvent
     public static void onConfigChanged(ConfigChangedEvent.OnConfigChangedEvent event) {
         if (event.getModID().equals(Terrarium.ID)) {
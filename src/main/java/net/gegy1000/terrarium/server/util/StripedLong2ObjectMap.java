@@ -0,0 +1,242 @@
+package net.gegy1000.terrarium.server.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+// a concurrent long-keyed map, split into stripes that are each an open addressing table. writes lock only their
+// stripe and mutate it in place, while reads are optimistic: they never lock or allocate unless they raced a write to
+// the same stripe, in which case they are retried under the read lock
+public final class StripedLong2ObjectMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Stripe<V>[] stripes;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    public StripedLong2ObjectMap(int stripeCount) {
+        int size = HashCommon.nextPowerOfTwo(Math.max(stripeCount, 1));
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe<>();
+        }
+        this.mask = size - 1;
+    }
+
+    @Nullable
+    public V get(long key) {
+        long hash = HashCommon.mix(key);
+        return this.stripe(hash).get(key, hash);
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> function) {
+        long hash = HashCommon.mix(key);
+        Stripe<V> stripe = this.stripe(hash);
+
+        V value = stripe.get(key, hash);
+        if (value != null) {
+            return value;
+        }
+
+        long stamp = stripe.lock.writeLock();
+        try {
+            value = stripe.find(key, hash);
+            if (value == null) {
+                value = function.apply(key);
+                stripe.insert(key, hash, value);
+            }
+            return value;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean remove(long key, V value) {
+        long hash = HashCommon.mix(key);
+        Stripe<V> stripe = this.stripe(hash);
+
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.remove(key, hash, value);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Stripe<V> stripe : this.stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                stripe.collectValues(values);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return values;
+    }
+
+    public void clear() {
+        for (Stripe<V> stripe : this.stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.table = new Table(INITIAL_CAPACITY);
+                stripe.size = 0;
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private Stripe<V> stripe(long hash) {
+        return this.stripes[(int) hash & this.mask];
+    }
+
+    // the low bits of the hash pick the stripe, so slots within a stripe are picked by the high bits
+    private static int slot(long hash, int mask) {
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private static final class Stripe<V> {
+        final StampedLock lock = new StampedLock();
+
+        Table table = new Table(INITIAL_CAPACITY);
+        int size;
+
+        @Nullable
+        V get(long key, long hash) {
+            long stamp = this.lock.tryOptimisticRead();
+            if (stamp != 0) {
+                V value = this.find(key, hash);
+                if (this.lock.validate(stamp)) {
+                    return value;
+                }
+            }
+
+            stamp = this.lock.readLock();
+            try {
+                return this.find(key, hash);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+
+        // may be called without holding the lock, in which case the result is only valid if the stamp validates. the
+        // keys and values are read through one table, so they always agree in length, and probing is bounded by the
+        // capacity, so a torn read can give a wrong answer but never fail or loop forever
+        @Nullable
+        @SuppressWarnings("unchecked")
+        V find(long key, long hash) {
+            Table table = this.table;
+            int mask = table.keys.length - 1;
+            int pos = slot(hash, mask);
+            for (int i = 0; i <= mask; i++) {
+                Object value = table.values[pos];
+                if (value == null) {
+                    return null;
+                }
+                if (table.keys[pos] == key) {
+                    return (V) value;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return null;
+        }
+
+        void insert(long key, long hash, V value) {
+            if ((this.size + 1) * 4 > this.table.keys.length * 3) {
+                this.table = this.table.resize(this.table.keys.length * 2);
+            }
+            this.table.insert(key, hash, value);
+            this.size++;
+        }
+
+        boolean remove(long key, long hash, V value) {
+            Table table = this.table;
+            int mask = table.keys.length - 1;
+            int pos = slot(hash, mask);
+            while (table.values[pos] != null) {
+                if (table.keys[pos] == key) {
+                    if (table.values[pos] != value) {
+                        return false;
+                    }
+                    table.removeAt(pos);
+                    this.size--;
+                    return true;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        void collectValues(List<V> values) {
+            for (Object value : this.table.values) {
+                if (value != null) {
+                    values.add((V) value);
+                }
+            }
+        }
+    }
+
+    // slots are occupied where their value is not null, given that 0 is a valid key
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+
+        Table resize(int capacity) {
+            Table resized = new Table(capacity);
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.values[i] != null) {
+                    resized.insert(this.keys[i], HashCommon.mix(this.keys[i]), this.values[i]);
+                }
+            }
+            return resized;
+        }
+
+        void insert(long key, long hash, Object value) {
+            int mask = this.keys.length - 1;
+            int pos = slot(hash, mask);
+            while (this.values[pos] != null) {
+                pos = (pos + 1) & mask;
+            }
+            this.keys[pos] = key;
+            this.values[pos] = value;
+        }
+
+        // shifts following entries back into the freed slot, so that no probe sequence is broken by the removal
+        void removeAt(int pos) {
+            int mask = this.keys.length - 1;
+            while (true) {
+                int last = pos;
+                pos = (pos + 1) & mask;
+
+                while (true) {
+                    if (this.values[pos] == null) {
+                        this.keys[last] = 0;
+                        this.values[last] = null;
+                        return;
+                    }
+
+                    int slot = slot(HashCommon.mix(this.keys[pos]), mask);
+                    if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                        break;
+                    }
+                    pos = (pos + 1) & mask;
+                }
+
+                this.keys[last] = this.keys[pos];
+                this.values[last] = this.values[pos];
+            }
+        }
+    }
+}
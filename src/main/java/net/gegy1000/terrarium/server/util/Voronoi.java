@@ -7,7 +7,7 @@ import net.minecraft.util.math.MathHelper;
 public class Voronoi {
     private static final long DISPLACEMENT_SEED = 2016969737595986194L;
 
-    private final SpatialRandom random;
+    private final ThreadLocal<SpatialRandom> random;
 
     private final DistanceFunc distanceFunc;
     private final double fuzzRange;
@@ -16,7 +16,7 @@ public class Voronoi {
         this.distanceFunc = distanceFunc;
         this.fuzzRange = fuzzRange;
 
-        this.random = new SpatialRandom(seed, DISPLACEMENT_SEED);
+        this.random = ThreadLocal.withInitial(() -> new SpatialRandom(seed, DISPLACEMENT_SEED));
     }
 
     public <T> void scale(T src, T dest, DataView srcView, DataView destView,
@@ -66,6 +66,8 @@ public class Voronoi {
         int srcWidth = srcView.getWidth();
         int srcHeight = srcView.getHeight();
 
+        SpatialRandom random = this.random.get();
+
         int cellIndex = 0;
         double selectionDistance = Double.MAX_VALUE;
 
@@ -75,8 +77,8 @@ public class Voronoi {
                     continue;
                 }
 
-                this.random.setSeed(srcX + srcView.getX(), srcY + srcView.getY());
-                double distance = this.distanceFunc.get(x, y, this.fuzz(srcX), this.fuzz(srcY));
+                random.setSeed(srcX + srcView.getX(), srcY + srcView.getY());
+                double distance = this.distanceFunc.get(x, y, this.fuzz(random, srcX), this.fuzz(random, srcY));
                 if (distance < selectionDistance) {
                     selectionDistance = distance;
                     cellIndex = srcX + srcY * srcWidth;
@@ -87,8 +89,8 @@ public class Voronoi {
         return cellIndex;
     }
 
-    private double fuzz(double x) {
-        double offset = this.random.nextInt(4) / 4.0 - 0.5;
+    private double fuzz(SpatialRandom random, double x) {
+        double offset = random.nextInt(4) / 4.0 - 0.5;
         return (x + 0.5) + (offset * this.fuzzRange);
     }
 
@@ -119,7 +119,7 @@ public class ComposableBiomeProvider extends BiomeProvider {
         Collection<ColumnDataEntry.Handle> columnHandles = new ArrayList<>();
         for (int chunkZ = chunkMinZ; chunkZ <= chunkMaxZ; chunkZ++) {
             for (int chunkX = chunkMinX; chunkX <= chunkMaxX; chunkX++) {
-                columnHandles.add(terrarium.getDataCache().acquireEntry(new ChunkPos(chunkX, chunkZ)));
+                columnHandles.add(terrarium.getDataCache().acquireEntry(chunkX, chunkZ));
             }
         }
 
@@ -2,8 +2,25 @@ package net.gegy1000.terrarium.server.world.chunk.tracker;
 
 import net.minecraft.util.math.ChunkPos;
 
-import java.util.LinkedHashSet;
-
 public interface ChunkTrackerAccess {
-    LinkedHashSet<ChunkPos> getSortedQueuedColumns();
+    // pushes the columns that have started or stopped being tracked since the last update
+    void update(Listener listener);
+
+    // lower values are more urgent
+    int getPriority(ChunkPos columnPos);
+
+    default void onColumnLoaded(ChunkPos columnPos) {
+    }
+
+    default void onCubeWatched(ChunkPos columnPos) {
+    }
+
+    default void onCubeUnwatched(ChunkPos columnPos) {
+    }
+
+    interface Listener {
+        void track(ChunkPos columnPos);
+
+        void untrack(ChunkPos columnPos);
+    }
 }
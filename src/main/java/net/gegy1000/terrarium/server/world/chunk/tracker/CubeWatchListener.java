@@ -0,0 +1,52 @@
+package net.gegy1000.terrarium.server.world.chunk.tracker;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.CubeUnWatchEvent;
+import io.github.opencubicchunks.cubicchunks.api.world.CubeWatchEvent;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import net.gegy1000.terrarium.server.capability.TerrariumWorld;
+import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import javax.annotation.Nullable;
+
+// cubes are only generated once a player needs them, so a loaded column says nothing about whether its data is still
+// needed. instead, a column stays queued until players have stopped watching all of its cubes
+public final class CubeWatchListener {
+    @SubscribeEvent
+    public static void onCubeWatch(CubeWatchEvent event) {
+        ICube cube = event.getCube();
+        ColumnDataCache dataCache = getDataCache(cube);
+        if (dataCache != null) {
+            CubePos coords = cube.getCoords();
+            dataCache.onCubeWatched(new ChunkPos(coords.getX(), coords.getZ()));
+        }
+    }
+
+    @SubscribeEvent
+    public static void onCubeUnwatch(CubeUnWatchEvent event) {
+        ICube cube = event.getCube();
+        ColumnDataCache dataCache = getDataCache(cube);
+        if (dataCache != null) {
+            CubePos coords = cube.getCoords();
+            dataCache.onCubeUnwatched(new ChunkPos(coords.getX(), coords.getZ()));
+        }
+    }
+
+    @Nullable
+    private static ColumnDataCache getDataCache(@Nullable ICube cube) {
+        if (cube == null) {
+            return null;
+        }
+
+        World world = cube.getWorld();
+        if (world.isRemote) {
+            return null;
+        }
+
+        TerrariumWorld terrarium = TerrariumWorld.get(world);
+        return terrarium != null ? terrarium.getDataCache() : null;
+    }
+}
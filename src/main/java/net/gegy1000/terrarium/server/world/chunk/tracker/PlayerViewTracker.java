@@ -0,0 +1,236 @@
+package net.gegy1000.terrarium.server.world.chunk.tracker;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.WorldServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// keeps a live set of the columns that players will need generated, from the view area around each player. each
+// update only processes the columns that players have moved into or out of, instead of scanning every chunk entry
+public abstract class PlayerViewTracker implements ChunkTrackerAccess {
+    protected final WorldServer world;
+    private final int neighbourRadius;
+
+    private final Map<UUID, ChunkPos> playerColumns = new HashMap<>();
+    private int viewRadius = -1;
+
+    // player columns indexed by cell, with cells wide enough that the nearest player to any tracked column is always
+    // within the surrounding cells, so that finding it does not need to visit every player
+    private final Long2ObjectMap<List<ChunkPos>> playerCells = new Long2ObjectOpenHashMap<>();
+    private int cellSize = 1;
+
+    private final Object2IntMap<ChunkPos> viewCounts = new Object2IntOpenHashMap<>();
+    private final Set<ChunkPos> queuedColumns = new HashSet<>();
+    private final Object2IntMap<ChunkPos> trackedCounts = new Object2IntOpenHashMap<>();
+
+    private final Map<ChunkPos, Boolean> changes = new LinkedHashMap<>();
+
+    protected PlayerViewTracker(WorldServer world, int neighbourRadius) {
+        this.world = world;
+        this.neighbourRadius = neighbourRadius;
+    }
+
+    protected abstract boolean isGenerated(ChunkPos columnPos);
+
+    @Override
+    public void update(Listener listener) {
+        int viewRadius = this.world.getMinecraftServer().getPlayerList().getViewDistance();
+        if (viewRadius != this.viewRadius) {
+            for (ChunkPos column : this.playerColumns.values()) {
+                this.removeView(column, this.viewRadius);
+            }
+            this.playerColumns.clear();
+            this.viewRadius = viewRadius;
+        }
+
+        Set<UUID> players = new HashSet<>();
+        for (EntityPlayer player : this.world.playerEntities) {
+            UUID id = player.getUniqueID();
+            players.add(id);
+
+            ChunkPos column = new ChunkPos(MathHelper.floor(player.posX) >> 4, MathHelper.floor(player.posZ) >> 4);
+            ChunkPos lastColumn = this.playerColumns.put(id, column);
+            if (lastColumn == null) {
+                this.addView(column, viewRadius);
+            } else if (!lastColumn.equals(column)) {
+                this.moveView(lastColumn, column, viewRadius);
+            }
+        }
+
+        Iterator<Map.Entry<UUID, ChunkPos>> iterator = this.playerColumns.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, ChunkPos> entry = iterator.next();
+            if (!players.contains(entry.getKey())) {
+                this.removeView(entry.getValue(), viewRadius);
+                iterator.remove();
+            }
+        }
+
+        this.indexPlayers(viewRadius);
+
+        for (Map.Entry<ChunkPos, Boolean> change : this.changes.entrySet()) {
+            if (change.getValue()) {
+                listener.track(change.getKey());
+            } else {
+                listener.untrack(change.getKey());
+            }
+        }
+        this.changes.clear();
+    }
+
+    // tracked columns are at most the view and neighbour radius from their player on either axis, so the nearest
+    // player is within that distance times the square root of two: cells twice that wide are enough
+    private void indexPlayers(int viewRadius) {
+        this.cellSize = 2 * (viewRadius + this.neighbourRadius) + 1;
+
+        this.playerCells.clear();
+        for (ChunkPos column : this.playerColumns.values()) {
+            long cell = ChunkPos.asLong(Math.floorDiv(column.x, this.cellSize), Math.floorDiv(column.z, this.cellSize));
+            List<ChunkPos> players = this.playerCells.get(cell);
+            if (players == null) {
+                players = new ArrayList<>(1);
+                this.playerCells.put(cell, players);
+            }
+            players.add(column);
+        }
+    }
+
+    // columns with no player nearby are not tracked, and so are left with the lowest priority
+    @Override
+    public int getPriority(ChunkPos columnPos) {
+        int cellX = Math.floorDiv(columnPos.x, this.cellSize);
+        int cellZ = Math.floorDiv(columnPos.z, this.cellSize);
+
+        int priority = Integer.MAX_VALUE;
+        for (int z = -1; z <= 1; z++) {
+            for (int x = -1; x <= 1; x++) {
+                List<ChunkPos> players = this.playerCells.get(ChunkPos.asLong(cellX + x, cellZ + z));
+                if (players == null) {
+                    continue;
+                }
+                for (ChunkPos playerColumn : players) {
+                    int deltaX = columnPos.x - playerColumn.x;
+                    int deltaZ = columnPos.z - playerColumn.z;
+                    priority = Math.min(priority, deltaX * deltaX + deltaZ * deltaZ);
+                }
+            }
+        }
+        return priority;
+    }
+
+    @Override
+    public void onColumnLoaded(ChunkPos columnPos) {
+        this.dequeue(columnPos);
+    }
+
+    protected void dequeue(ChunkPos columnPos) {
+        if (this.queuedColumns.remove(columnPos)) {
+            this.updateNeighbours(columnPos, -1);
+        }
+    }
+
+    // puts a column that is still in view back into the queue
+    protected void requeue(ChunkPos columnPos) {
+        if (this.viewCounts.getInt(columnPos) > 0 && this.queuedColumns.add(columnPos)) {
+            this.updateNeighbours(columnPos, 1);
+        }
+    }
+
+    private void addView(ChunkPos center, int radius) {
+        for (int z = -radius; z <= radius; z++) {
+            for (int x = -radius; x <= radius; x++) {
+                this.enterView(new ChunkPos(center.x + x, center.z + z));
+            }
+        }
+    }
+
+    private void removeView(ChunkPos center, int radius) {
+        for (int z = -radius; z <= radius; z++) {
+            for (int x = -radius; x <= radius; x++) {
+                this.exitView(new ChunkPos(center.x + x, center.z + z));
+            }
+        }
+    }
+
+    private void moveView(ChunkPos from, ChunkPos to, int radius) {
+        for (int z = -radius; z <= radius; z++) {
+            for (int x = -radius; x <= radius; x++) {
+                ChunkPos column = new ChunkPos(from.x + x, from.z + z);
+                if (!isInView(column, to, radius)) {
+                    this.exitView(column);
+                }
+            }
+        }
+
+        for (int z = -radius; z <= radius; z++) {
+            for (int x = -radius; x <= radius; x++) {
+                ChunkPos column = new ChunkPos(to.x + x, to.z + z);
+                if (!isInView(column, from, radius)) {
+                    this.enterView(column);
+                }
+            }
+        }
+    }
+
+    private static boolean isInView(ChunkPos column, ChunkPos center, int radius) {
+        return Math.abs(column.x - center.x) <= radius && Math.abs(column.z - center.z) <= radius;
+    }
+
+    private void enterView(ChunkPos column) {
+        int count = this.viewCounts.getInt(column);
+        this.viewCounts.put(column, count + 1);
+
+        if (count == 0 && !this.isGenerated(column)) {
+            this.queuedColumns.add(column);
+            this.updateNeighbours(column, 1);
+        }
+    }
+
+    private void exitView(ChunkPos column) {
+        int count = this.viewCounts.getInt(column) - 1;
+        if (count > 0) {
+            this.viewCounts.put(column, count);
+            return;
+        }
+
+        this.viewCounts.removeInt(column);
+        if (this.queuedColumns.remove(column)) {
+            this.updateNeighbours(column, -1);
+        }
+    }
+
+    // surrounding columns need to be loaded for decoration and lighting
+    private void updateNeighbours(ChunkPos column, int delta) {
+        int radius = this.neighbourRadius;
+        for (int z = -radius; z <= radius; z++) {
+            for (int x = -radius; x <= radius; x++) {
+                ChunkPos neighbour = new ChunkPos(column.x + x, column.z + z);
+
+                int count = this.trackedCounts.getInt(neighbour) + delta;
+                if (count > 0) {
+                    this.trackedCounts.put(neighbour, count);
+                    if (delta > 0 && count == 1) {
+                        this.changes.put(neighbour, true);
+                    }
+                } else {
+                    this.trackedCounts.removeInt(neighbour);
+                    this.changes.put(neighbour, false);
+                }
+            }
+        }
+    }
+}
@@ -1,19 +1,39 @@
 package net.gegy1000.terrarium.server.world.data;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import net.gegy1000.justnow.executor.CurrentThreadExecutor;
+import net.gegy1000.justnow.future.Future;
+import net.gegy1000.terrarium.server.world.data.raster.AbstractRaster;
+import net.gegy1000.terrarium.server.world.data.raster.BitRaster;
+import net.gegy1000.terrarium.server.world.data.raster.Raster;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class ColumnData {
     private final DataView view;
+    private final Set<DataKey<?>> keys;
     private final Map<DataKey<?>, Optional<?>> store;
 
-    ColumnData(DataView view, Map<DataKey<?>, Optional<?>> store) {
+    // computes keys that have not yet been requested; dropped once every key is present
+    private volatile Source source;
+
+    ColumnData(DataView view, Set<DataKey<?>> keys, Map<DataKey<?>, Optional<?>> store, @Nullable Source source) {
         this.view = view;
-        this.store = store;
+        this.keys = ImmutableSet.copyOf(keys);
+        this.store = new ConcurrentHashMap<>(store);
+        this.source = source;
+        this.releaseSourceIfComplete();
+    }
+
+    ColumnData(DataView view, Map<DataKey<?>, Optional<?>> store) {
+        this(view, store.keySet(), store, null);
     }
 
     @Nonnull
@@ -21,31 +41,146 @@ public final class ColumnData {
         return this.view;
     }
 
-    @SuppressWarnings({ "unchecked", "OptionalAssignedToNull" })
     public <T> Optional<T> get(DataKey<T> key) {
+        Optional<T> data = this.getNow(key);
+        if (data != null) {
+            return data;
+        }
+
+        if (!StallWatchdog.isServerThread()) {
+            return CurrentThreadExecutor.blockOn(this.load(key));
+        }
+
+        Source source = this.source;
+        Map<String, Long> timings = source != null ? source.getTimings() : Collections.emptyMap();
+
+        long start = System.nanoTime();
+        Optional<T> result = CurrentThreadExecutor.blockOn(this.load(key));
+        long time = System.nanoTime() - start;
+
+        String cause = "lazy key " + key;
+        Map<String, Long> causes = source != null ? StallWatchdog.since(timings, source.getTimings()) : Collections.emptyMap();
+        StallWatchdog.INSTANCE.recordStall(cause, time, causes.isEmpty() ? Collections.singletonMap(cause, time) : causes);
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Future<Optional<T>> load(DataKey<T> key) {
+        Optional<T> data = this.getNow(key);
+        if (data != null) {
+            return Future.ready(data);
+        }
+
+        Source source = this.source;
+        if (source == null || !this.keys.contains(key)) {
+            return Future.ready(Optional.empty());
+        }
+
+        return source.load(key).map(result -> {
+            Optional<?> existing = this.store.putIfAbsent(key, result);
+            this.releaseSourceIfComplete();
+            return (Optional<T>) (existing != null ? existing : result);
+        });
+    }
+
+    @Nullable
+    @SuppressWarnings({ "unchecked", "OptionalAssignedToNull" })
+    private <T> Optional<T> getNow(DataKey<T> key) {
         Optional<?> data = this.store.get(key);
-        if (data == null) {
+        if (data == null && !this.keys.contains(key)) {
             return Optional.empty();
         }
         return (Optional<T>) data;
     }
 
+    public boolean isLoaded(DataKey<?> key) {
+        return this.store.containsKey(key) || !this.keys.contains(key);
+    }
+
+    private synchronized void releaseSourceIfComplete() {
+        Source source = this.source;
+        if (source != null && this.store.size() >= this.keys.size()) {
+            this.source = null;
+            source.close();
+        }
+    }
+
+    Map<DataKey<?>, Optional<?>> getLoaded() {
+        return Collections.unmodifiableMap(this.store);
+    }
+
+    long getByteSize() {
+        long size = 0;
+        for (Optional<?> value : this.store.values()) {
+            if (value.isPresent() && value.get() instanceof AbstractRaster) {
+                size += ((AbstractRaster<?>) value.get()).getByteSize();
+            }
+        }
+        return size;
+    }
+
     public <T> T getOrDefault(DataKey<T> key) {
         return this.get(key).orElseGet(() -> key.createDefault(this.view));
     }
 
     public Set<DataKey<?>> keys() {
-        return this.store.keySet();
+        return this.keys;
+    }
+
+    public ColumnData slice(DataView view) {
+        Map<DataKey<?>, Optional<?>> store = new ConcurrentHashMap<>(this.store.size());
+        for (Map.Entry<DataKey<?>, Optional<?>> entry : this.store.entrySet()) {
+            DataKey<?> key = entry.getKey();
+            store.put(key, entry.getValue().map(value -> this.sliceValue(key, value, view)));
+        }
+
+        Source source = null;
+        if (this.source != null) {
+            source = key -> this.load(key).map(result -> result.map(value -> this.sliceValue(key, value, view)));
+        }
+
+        return new ColumnData(view, this.keys, store, source);
+    }
+
+    private Object sliceValue(DataKey<?> key, Object value, DataView view) {
+        if (value instanceof BitRaster) {
+            BitRaster source = (BitRaster) value;
+            BitRaster result = BitRaster.create(view);
+
+            int offsetX = view.getX() - this.view.getX();
+            int offsetY = view.getY() - this.view.getY();
+            result.transform((v, x, y) -> source.get(x + offsetX, y + offsetY));
+
+            return result;
+        } else if (value instanceof Raster) {
+            Raster<?> result = (Raster<?>) key.createDefault(view);
+            Raster.rasterCopy((Raster<?>) value, this.view, result, view);
+            return result;
+        }
+        return value;
     }
 
     public Optional<With> with(DataKey<?>... keys) {
         for (DataKey<?> key : keys) {
-            Optional<?> value = this.store.get(key);
-            if (value == null || !value.isPresent()) return Optional.empty();
+            if (!this.get(key).isPresent()) return Optional.empty();
         }
         return Optional.of(new With(Sets.newHashSet(keys)));
     }
 
+    interface Source {
+        Future<Optional<?>> load(DataKey<?> key);
+
+        // the time spent on each key, op and tile source by the work behind this source so far
+        default Map<String, Long> getTimings() {
+            return Collections.emptyMap();
+        }
+
+        // called once every key has been loaded
+        default void close() {
+        }
+    }
+
     public final class With {
         private final Set<DataKey<?>> keys;
 
@@ -2,33 +2,69 @@ package net.gegy1000.terrarium.server.world.data;
 
 import net.gegy1000.gengen.api.CubicPos;
 import net.gegy1000.gengen.core.GenGen;
+import net.gegy1000.justnow.executor.CurrentThreadExecutor;
+import net.gegy1000.justnow.future.Future;
+import net.gegy1000.terrarium.Terrarium;
+import net.gegy1000.terrarium.server.config.TerrariumConfig;
+import net.gegy1000.terrarium.server.util.StripedLong2ObjectMap;
+import net.gegy1000.terrarium.server.util.Vec2i;
 import net.gegy1000.terrarium.server.world.chunk.tracker.ChunkTrackerAccess;
 import net.gegy1000.terrarium.server.world.chunk.tracker.ColumnTrackerAccess;
 import net.gegy1000.terrarium.server.world.chunk.tracker.CubeTrackerAccess;
 import net.gegy1000.terrarium.server.world.chunk.tracker.FallbackTrackerAccess;
+import net.gegy1000.terrarium.server.world.generator.customization.GenerationSettings;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
-import java.util.Collection;
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.BiFunction;
 
 public class ColumnDataCache implements AutoCloseable {
-    private final Map<ChunkPos, ColumnDataEntry> entries = new HashMap<>();
+    // entries are read by chunk generation and decoration from any thread, so we key them by packed column position
+    private final StripedLong2ObjectMap<ColumnDataEntry> entries = new StripedLong2ObjectMap<>(64);
 
+    private final DataGenerator generator;
     private final ColumnDataLoader loader;
 
     private final ChunkTrackerAccess chunkTrackerAccess;
 
-    public ColumnDataCache(World world, DataGenerator generator) {
-        this.loader = new ColumnDataLoader(column -> generator.generate(DataView.of(column)));
+    @Nullable
+    private final ColumnDataStore store;
+
+    public ColumnDataCache(World world, GenerationSettings settings, DataGenerator generator) {
+        this.generator = generator;
+        this.store = TerrariumConfig.persistColumnData ? ColumnDataStore.open(world, settings, generator.getKeys()) : null;
+        this.loader = new ColumnDataLoader(createSource(generator, this.store), generator::createContext, TerrariumConfig.columnBatchSize);
         this.chunkTrackerAccess = createTrackerAccess(world);
     }
 
+    private static BiFunction<DataView, DataContext, Future<ColumnData>> createSource(DataGenerator generator, @Nullable ColumnDataStore store) {
+        if (store == null) {
+            return generator::generatePrefetched;
+        }
+
+        return (view, ctx) -> store.read(view, ctx).andThen(stored -> {
+            if (stored.isPresent()) {
+                return Future.ready(generator.restore(view, stored.get(), ctx));
+            }
+
+            return generator.generatePrefetched(view, ctx).map(data -> {
+                // results built from fallback data after a source failed to load should be generated again next time
+                if (!ctx.hasFailed()) {
+                    store.write(view, data);
+                }
+                return data;
+            });
+        });
+    }
+
     private static ChunkTrackerAccess createTrackerAccess(World world) {
         if (!(world instanceof WorldServer)) {
             return FallbackTrackerAccess.INSTANCE;
@@ -43,57 +79,159 @@ public class ColumnDataCache implements AutoCloseable {
         return new CubeTrackerAccess(world);
     }
 
-    private void setTrackedColumns(Collection<ChunkPos> columns) {
-        for (ColumnDataEntry entry : this.entries.values()) {
-            if (!columns.contains(entry.getColumnPos())) {
-                entry.untrack();
+    public void advanceLoadingFor(long nanos) {
+        this.loader.advanceFor(nanos);
+    }
+
+    public void trackColumns() {
+        this.chunkTrackerAccess.update(new ChunkTrackerAccess.Listener() {
+            @Override
+            public void track(ChunkPos columnPos) {
+                ColumnDataCache.this.trackEntry(columnPos);
             }
-        }
 
-        for (ChunkPos column : columns) {
-            ColumnDataEntry entry = this.getEntry(column);
-            entry.track();
-        }
+            @Override
+            public void untrack(ChunkPos columnPos) {
+                ColumnDataEntry entry = ColumnDataCache.this.entries.get(ChunkPos.asLong(columnPos.x, columnPos.z));
+                if (entry != null) {
+                    entry.untrack();
+                }
+            }
+        });
     }
 
-    public void advanceLoadingFor(long nanos) {
-        this.loader.advanceFor(nanos);
+    public ColumnDataLoader.RetentionStats getRetentionStats() {
+        return this.loader.getRetentionStats();
     }
 
-    public void trackColumns() {
-        this.setTrackedColumns(this.chunkTrackerAccess.getSortedQueuedColumns());
+    public void prioritizeColumns() {
+        this.loader.prioritize(this.chunkTrackerAccess::getPriority);
     }
 
-    public void dropColumns() {
-        List<ChunkPos> droppedColumns = this.entries.values().stream()
-                .filter(ColumnDataEntry::tryDrop)
-                .map(ColumnDataEntry::getColumnPos)
-                .collect(Collectors.toList());
+    public void onColumnLoaded(ChunkPos columnPos) {
+        this.chunkTrackerAccess.onColumnLoaded(columnPos);
+    }
+
+    public void onCubeWatched(ChunkPos columnPos) {
+        this.chunkTrackerAccess.onCubeWatched(columnPos);
+    }
 
-        droppedColumns.forEach(this.entries::remove);
+    public void onCubeUnwatched(ChunkPos columnPos) {
+        this.chunkTrackerAccess.onCubeUnwatched(columnPos);
+    }
+
+    public void dropColumns() {
+        for (ColumnDataEntry entry : this.entries.values()) {
+            if (entry.tryDrop()) {
+                ChunkPos columnPos = entry.getColumnPos();
+                this.entries.remove(ChunkPos.asLong(columnPos.x, columnPos.z), entry);
+            }
+        }
     }
 
     public ColumnDataEntry.Handle acquireEntry(ChunkPos columnPos) {
-        return this.getEntry(columnPos).acquire();
+        return this.acquireEntry(columnPos.x, columnPos.z);
+    }
+
+    public ColumnDataEntry.Handle acquireEntry(int columnX, int columnZ) {
+        long key = ChunkPos.asLong(columnX, columnZ);
+        while (true) {
+            ColumnDataEntry entry = this.getEntry(key, columnX, columnZ);
+            ColumnDataEntry.Handle handle = entry.tryAcquire();
+            if (handle != null) {
+                return handle;
+            }
+
+            // the entry was dropped between our lookup and acquiring it
+            this.entries.remove(key, entry);
+        }
     }
 
     public <T> Optional<T> joinData(CubicPos cubicPos, DataKey<T> key) {
-        return this.joinData(new ChunkPos(cubicPos.getX(), cubicPos.getZ()), key);
+        return this.joinData(cubicPos.getX(), cubicPos.getZ(), key);
     }
 
     public <T> Optional<T> joinData(ChunkPos columnPos, DataKey<T> key) {
-        try (ColumnDataEntry.Handle handle = this.acquireEntry(columnPos)) {
+        return this.joinData(columnPos.x, columnPos.z, key);
+    }
+
+    public <T> Optional<T> joinData(int columnX, int columnZ, DataKey<T> key) {
+        try (ColumnDataEntry.Handle handle = this.acquireEntry(columnX, columnZ)) {
             ColumnData data = handle.join();
             return data.get(key);
         }
     }
 
-    private ColumnDataEntry getEntry(ChunkPos columnPos) {
-        return this.entries.computeIfAbsent(columnPos, pos -> new ColumnDataEntry(pos, this.loader));
+    // samples the given keys at a single point: data is read from the column if it is already loaded, but otherwise
+    // only the requested keys are generated over that point, rather than every key over the whole column
+    public ColumnData queryPoint(int x, int z, DataKey<?>... keys) {
+        return this.queryPoints(Collections.singletonList(new Vec2i(x, z)), keys).get(0);
+    }
+
+    public List<ColumnData> queryPoints(List<Vec2i> points, DataKey<?>... keys) {
+        List<ColumnData> result = new ArrayList<>(points.size());
+        List<Vec2i> generatePoints = new ArrayList<>();
+
+        for (Vec2i point : points) {
+            ColumnDataEntry entry = this.entries.get(ChunkPos.asLong(point.x >> 4, point.y >> 4));
+            ColumnData data = entry != null ? entry.getIfLoaded() : null;
+
+            // a loaded column is only used if it already holds every key: getting a missing key from it would
+            // generate that key over its whole region rather than over the single point
+            if (data != null && !isLoaded(data, keys)) {
+                data = null;
+            }
+
+            if (data == null) {
+                generatePoints.add(point);
+            }
+            result.add(data);
+        }
+
+        if (!generatePoints.isEmpty()) {
+            List<ColumnData> generated = CurrentThreadExecutor.blockOn(this.generator.generatePoints(generatePoints, Arrays.asList(keys)));
+
+            Iterator<ColumnData> iterator = generated.iterator();
+            for (int i = 0; i < result.size(); i++) {
+                if (result.get(i) == null) {
+                    result.set(i, iterator.next());
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isLoaded(ColumnData data, DataKey<?>[] keys) {
+        for (DataKey<?> key : keys) {
+            if (!data.isLoaded(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void trackEntry(ChunkPos columnPos) {
+        long key = ChunkPos.asLong(columnPos.x, columnPos.z);
+        while (true) {
+            ColumnDataEntry entry = this.getEntry(key, columnPos.x, columnPos.z);
+            if (entry.tryTrack()) {
+                return;
+            }
+            this.entries.remove(key, entry);
+        }
+    }
+
+    private ColumnDataEntry getEntry(long key, int columnX, int columnZ) {
+        return this.entries.computeIfAbsent(key, k -> new ColumnDataEntry(new ChunkPos(columnX, columnZ), this.loader));
     }
 
     @Override
     public void close() {
+        Terrarium.LOGGER.info("Column data retention: {}", this.loader.getRetentionStats());
         this.loader.close();
+        if (this.store != null) {
+            this.store.close();
+        }
     }
 }
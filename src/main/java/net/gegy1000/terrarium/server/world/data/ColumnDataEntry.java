@@ -19,7 +19,10 @@ public final class ColumnDataEntry {
 
     @Nullable
     private Future<ColumnData> future;
-    private ColumnData data;
+
+    // published once joined, so that it can be read without taking the lock
+    @Nullable
+    private volatile ColumnData data;
 
     private long lastAccessTime = System.currentTimeMillis();
 
@@ -35,39 +38,64 @@ public final class ColumnDataEntry {
         }
     }
 
-    void track() {
+    synchronized boolean tryTrack() {
+        if (this.dropped) {
+            return false;
+        }
         if (!this.tracked) {
             this.tracked = true;
             this.spawnIfNotLoaded();
         }
+        return true;
     }
 
-    void untrack() {
+    synchronized void untrack() {
         this.tracked = false;
     }
 
-    Handle acquire() {
+    @Nullable
+    synchronized Handle tryAcquire() {
+        if (this.dropped) {
+            return null;
+        }
         this.handleCount++;
         this.spawnIfNotLoaded();
         return new Handle();
     }
 
+    @Nullable
+    ColumnData getIfLoaded() {
+        return this.data;
+    }
+
     public ChunkPos getColumnPos() {
         return this.columnPos;
     }
 
+    // the column is generated without holding our lock, so that dropping, tracking and acquiring this entry from other
+    // threads is never held up by it. if several threads join at once, the first result to be published is kept
     private ColumnData join() {
-        this.touch();
-
-        this.future = null;
+        synchronized (this) {
+            this.touch();
+            this.future = null;
+        }
 
-        if (this.data != null) {
-            return this.data;
+        ColumnData data = this.data;
+        if (data != null) {
+            return data;
         }
 
-        this.data = this.loader.getNow(this.columnPos);
+        data = this.loader.getNow(this.columnPos);
 
-        return this.data;
+        synchronized (this) {
+            if (this.dropped) {
+                return data;
+            }
+            if (this.data == null) {
+                this.data = data;
+            }
+            return this.data;
+        }
     }
 
     private void touch() {
@@ -92,7 +120,7 @@ public final class ColumnDataEntry {
         return !this.tracked && this.handleCount <= 0 || this.checkLeaked();
     }
 
-    boolean tryDrop() {
+    synchronized boolean tryDrop() {
         if (this.shouldDrop()) {
             this.dropped = true;
             this.loader.cancel(this.columnPos);
@@ -103,8 +131,12 @@ public final class ColumnDataEntry {
         return false;
     }
 
+    private synchronized void release() {
+        this.handleCount--;
+    }
+
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return "ColumnDataEntry{handleCount=" + this.handleCount + ", tracked=" + this.tracked + "}";
     }
 
@@ -118,7 +150,7 @@ public final class ColumnDataEntry {
 
         public void release() {
             this.checkValid();
-            ColumnDataEntry.this.handleCount--;
+            ColumnDataEntry.this.release();
             this.released = true;
         }
 
@@ -4,74 +4,336 @@ import net.gegy1000.justnow.executor.CurrentThreadExecutor;
 import net.gegy1000.justnow.executor.LocalExecutor;
 import net.gegy1000.justnow.executor.TaskHandle;
 import net.gegy1000.justnow.future.Future;
+import net.gegy1000.terrarium.server.config.TerrariumConfig;
+import net.gegy1000.terrarium.server.world.data.source.DataSourceReader;
 import net.minecraft.util.math.ChunkPos;
 
+import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public final class ColumnDataLoader implements AutoCloseable {
+    private static final int MAX_EVICTED = 4096;
+
+    // the executor is advanced from the server thread, but columns can be spawned and joined from any thread
     private final LocalExecutor executor = new LocalExecutor();
 
-    private final Function<ChunkPos, Future<ColumnData>> generator;
+    private final BiFunction<DataView, DataContext, Future<ColumnData>> generator;
+    private final Supplier<DataContext> createContext;
+    private final int regionSize;
+
+    // a region stays alive for as long as any of its columns are held by an entry, given that lazily loaded keys
+    // are still generated through the region's context
+    private final Map<ChunkPos, Region> regions = new HashMap<>();
+
+    // regions that have been generated but no longer have any columns, kept in access order up to the memory budget
+    // so that revisiting them does not need to generate them again
+    private final LinkedHashMap<ChunkPos, Region> retained = new LinkedHashMap<>(16, 0.75F, true);
+
+    // regions recently evicted from the retained set, so that regenerating one of them counts as a miss. regions that
+    // were never generated before are not misses, or the hit rate would measure exploration rather than retention
+    private final Set<ChunkPos> evicted = Collections.newSetFromMap(new LinkedHashMap<ChunkPos, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChunkPos, Boolean> eldest) {
+            return this.size() > MAX_EVICTED;
+        }
+    });
+
+    private long retainedHits;
+    private long retainedMisses;
 
-    private final Map<ChunkPos, TaskHandle<ColumnData>> taskMap = new HashMap<>();
+    // set whenever one of our futures is woken or a new one is spawned, since nothing can be ready to make progress
+    // otherwise. futures are woken by data and tile tasks, but also by I/O and cancelled contexts among others, so this
+    // is flagged by the wakers themselves
+    private final AtomicBoolean woken = new AtomicBoolean();
 
-    ColumnDataLoader(Function<ChunkPos, Future<ColumnData>> generator) {
+    ColumnDataLoader(BiFunction<DataView, DataContext, Future<ColumnData>> generator, Supplier<DataContext> createContext, int regionSize) {
         this.generator = generator;
+        this.createContext = createContext;
+        this.regionSize = Math.max(regionSize, 1);
     }
 
+    // polls loading columns for up to the given time, returning early once none of them have been woken since we
+    // last polled
     public void advanceFor(long nanos) {
         long start = System.nanoTime();
-        while (System.nanoTime() - start < nanos) {
-            this.executor.advanceAll();
-        }
+        do {
+            if (!this.woken.getAndSet(false)) {
+                return;
+            }
+
+            synchronized (this.executor) {
+                this.executor.advanceAll();
+            }
+        } while (System.nanoTime() - start < nanos);
+    }
+
+    private <T> Future<T> flagWakes(Future<T> future) {
+        return waker -> future.poll(() -> {
+            this.woken.set(true);
+            waker.wake();
+        });
     }
 
     public Future<ColumnData> spawn(ChunkPos columnPos) {
-        TaskHandle<ColumnData> handle = this.executor.spawn(this.generator.apply(columnPos));
-        synchronized (this.taskMap) {
-            this.taskMap.put(columnPos, handle);
+        ChunkPos regionPos = this.regionPos(columnPos);
+        synchronized (this.regions) {
+            Region region = this.regions.get(regionPos);
+            if (region == null) {
+                region = this.reviveRetained(regionPos);
+            }
+
+            if (region == null) {
+                DataContext ctx = this.createContext.get();
+                Region created = new Region(ctx);
+
+                Future<ColumnData> future = this.generator.apply(this.regionView(regionPos), ctx).map(data -> {
+                    created.completed = data;
+                    return data;
+                });
+                synchronized (this.executor) {
+                    created.handle = this.executor.spawn(this.flagWakes(future));
+                }
+
+                region = created;
+                this.regions.put(regionPos, region);
+                this.woken.set(true);
+                if (this.evicted.remove(regionPos)) {
+                    this.retainedMisses++;
+                }
+            }
+
+            region.columns.add(columnPos);
+            return region.handle;
         }
-        return handle;
     }
 
     public ColumnData getNow(ChunkPos columnPos) {
-        TaskHandle<ColumnData> handle;
-        synchronized (this.taskMap) {
-            handle = this.taskMap.remove(columnPos);
+        ChunkPos regionPos = this.regionPos(columnPos);
+        DataView columnView = DataView.of(columnPos);
+
+        Region region;
+        synchronized (this.regions) {
+            region = this.regions.get(regionPos);
+        }
+
+        // nothing else is waiting on the rest of the region, so only this column is generated
+        if (region == null) {
+            DataContext ctx = this.createContext.get();
+            ctx.setPriority(DataContext.PRIORITY_URGENT);
+
+            Map<String, Long> timings = ctx.getTimings();
+            long start = System.nanoTime();
+            ColumnData data = CurrentThreadExecutor.blockOn(this.generator.apply(columnView, ctx));
+            if (StallWatchdog.isServerThread()) {
+                StallWatchdog.INSTANCE.recordStall("untracked column", System.nanoTime() - start, StallWatchdog.since(timings, ctx.getTimings()));
+            }
+            return data;
         }
 
-        Future<ColumnData> future;
-        if (handle != null) {
-            future = this.executor.steal(handle);
-        } else {
-            future = this.generator.apply(columnPos);
+        return region.join(this.executor).slice(columnView);
+    }
+
+    // schedules each region by the priority of its most urgent column
+    public void prioritize(ToIntFunction<ChunkPos> columnPriority) {
+        synchronized (this.regions) {
+            for (Region region : this.regions.values()) {
+                if (!region.joined) {
+                    int priority = DataContext.PRIORITY_UNTRACKED;
+                    for (ChunkPos columnPos : region.columns) {
+                        priority = Math.min(priority, columnPriority.applyAsInt(columnPos));
+                    }
+                    region.ctx.setPriority(priority);
+                }
+            }
         }
 
-        return CurrentThreadExecutor.blockOn(future);
+        DataGenerator.SCHEDULER.reprioritize();
+        DataSourceReader.INSTANCE.reprioritize();
     }
 
     public void cancel(ChunkPos columnPos) {
-        synchronized (this.taskMap) {
-            TaskHandle<ColumnData> handle = this.taskMap.remove(columnPos);
-            if (handle != null) {
-                this.executor.remove(handle);
+        ChunkPos regionPos = this.regionPos(columnPos);
+        synchronized (this.regions) {
+            Region region = this.regions.get(regionPos);
+            if (region != null) {
+                region.columns.remove(columnPos);
+                if (region.columns.isEmpty()) {
+                    this.regions.remove(regionPos);
+                    this.retainOrCancel(regionPos, region);
+                }
             }
         }
     }
 
+    @Nullable
+    private Region reviveRetained(ChunkPos regionPos) {
+        Region region = this.retained.remove(regionPos);
+        if (region != null) {
+            this.regions.put(regionPos, region);
+            this.retainedHits++;
+        }
+        return region;
+    }
+
+    private void retainOrCancel(ChunkPos regionPos, Region region) {
+        long budget = (long) TerrariumConfig.retainedColumnMemoryMb * 1024 * 1024;
+        ColumnData data = region.data != null ? region.data : region.completed;
+        if (data == null || budget <= 0) {
+            region.cancel(this.executor);
+            return;
+        }
+
+        // nothing is left to share intermediate results with but lazily loaded keys, which can load them again, so
+        // only the column data itself is kept
+        region.ctx.releaseRetained();
+        this.retained.put(regionPos, region);
+
+        // regions are weighed again each time, since lazy keys may have been loaded into them since they were retained
+        long retainedBytes = this.getRetainedBytes();
+
+        Iterator<Map.Entry<ChunkPos, Region>> iterator = this.retained.entrySet().iterator();
+        while (retainedBytes > budget && iterator.hasNext()) {
+            Map.Entry<ChunkPos, Region> evicted = iterator.next();
+            iterator.remove();
+            retainedBytes -= evicted.getValue().getByteSize();
+            evicted.getValue().cancel(this.executor);
+            this.evicted.add(evicted.getKey());
+        }
+    }
+
+    private long getRetainedBytes() {
+        long bytes = 0;
+        for (Region region : this.retained.values()) {
+            bytes += region.getByteSize();
+        }
+        return bytes;
+    }
+
+    public RetentionStats getRetentionStats() {
+        synchronized (this.regions) {
+            return new RetentionStats(this.retainedHits, this.retainedMisses, this.retained.size(), this.getRetainedBytes());
+        }
+    }
+
+    private ChunkPos regionPos(ChunkPos columnPos) {
+        return new ChunkPos(Math.floorDiv(columnPos.x, this.regionSize), Math.floorDiv(columnPos.z, this.regionSize));
+    }
+
+    private DataView regionView(ChunkPos regionPos) {
+        int size = this.regionSize << 4;
+        return DataView.square(regionPos.x * size, regionPos.z * size, size);
+    }
+
     @Override
     public void close() {
         this.cancelAll();
     }
 
     private void cancelAll() {
-        synchronized (this.taskMap) {
-            for (TaskHandle<ColumnData> handle : this.taskMap.values()) {
-                this.executor.remove(handle);
+        synchronized (this.regions) {
+            for (Region region : this.regions.values()) {
+                region.cancel(this.executor);
+            }
+            this.regions.clear();
+
+            for (Region region : this.retained.values()) {
+                region.cancel(this.executor);
+            }
+            this.retained.clear();
+            this.evicted.clear();
+        }
+    }
+
+    private static class Region {
+        TaskHandle<ColumnData> handle;
+        final DataContext ctx;
+        final Set<ChunkPos> columns = new HashSet<>();
+
+        volatile ColumnData data;
+        volatile ColumnData completed;
+        volatile boolean joined;
+
+        Region(DataContext ctx) {
+            this.ctx = ctx;
+        }
+
+        long getByteSize() {
+            ColumnData data = this.data != null ? this.data : this.completed;
+            return data != null ? data.getByteSize() : 0;
+        }
+
+        void cancel(LocalExecutor executor) {
+            synchronized (executor) {
+                executor.remove(this.handle);
+            }
+            this.ctx.cancel();
+        }
+
+
+        synchronized ColumnData join(LocalExecutor executor) {
+            ColumnData completed = this.completed;
+            if (this.data == null && completed != null) {
+                // the task has already finished, so there is nothing to wait on
+                this.joined = true;
+                synchronized (executor) {
+                    executor.remove(this.handle);
+                }
+                this.data = completed;
             }
-            this.taskMap.clear();
+
+            if (this.data == null) {
+                // the server thread is blocked on this region, as it will be for any lazily loaded keys later on
+                this.joined = true;
+                this.ctx.setPriority(DataContext.PRIORITY_URGENT);
+
+                Future<ColumnData> future;
+                synchronized (executor) {
+                    future = executor.steal(this.handle);
+                }
+
+                Map<String, Long> timings = this.ctx.getTimings();
+                long start = System.nanoTime();
+                this.data = CurrentThreadExecutor.blockOn(future);
+                if (StallWatchdog.isServerThread()) {
+                    StallWatchdog.INSTANCE.recordStall("region join", System.nanoTime() - start, StallWatchdog.since(timings, this.ctx.getTimings()));
+                }
+            }
+            return this.data;
+        }
+    }
+
+    public static class RetentionStats {
+        public final long hits;
+        public final long misses;
+        public final int regionCount;
+        public final long bytes;
+
+        RetentionStats(long hits, long misses, int regionCount, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.regionCount = regionCount;
+            this.bytes = bytes;
+        }
+
+        public double getHitRate() {
+            long total = this.hits + this.misses;
+            return total > 0 ? (double) this.hits / total : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.1f%% hit rate), %d regions retained in %.1fMB",
+                    this.hits, this.misses, this.getHitRate() * 100.0, this.regionCount, this.bytes / (1024.0 * 1024.0));
         }
     }
 }
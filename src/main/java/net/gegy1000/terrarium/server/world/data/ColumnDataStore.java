@@ -0,0 +1,352 @@
+package net.gegy1000.terrarium.server.world.data;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.gegy1000.justnow.future.Future;
+import net.gegy1000.terrarium.Terrarium;
+import net.gegy1000.terrarium.server.world.data.raster.AbstractRaster;
+import net.gegy1000.terrarium.server.world.data.source.TiledDataSource;
+import net.gegy1000.terrarium.server.world.generator.customization.GenerationSettings;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.storage.RegionFile;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// persists generated column data to disk, so that generating an area again costs a read rather than the whole
+// pipeline. data is keyed by a hash of the generation settings, and each generated region is stored as one entry in
+// a vanilla region file, which handles the packing and compression for us
+final class ColumnDataStore implements AutoCloseable {
+    private static final Path ROOT = TiledDataSource.GLOBAL_CACHE_ROOT.resolve("columns");
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FILE_SIZE = 32;
+    private static final int MAX_OPEN_FILES = 64;
+
+    // writes are queued in the background, while reads are run by the data workers
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("terrarium-column-io")
+                    .setDaemon(true)
+                    .build()
+    );
+
+    private static final byte TYPE_ABSENT = 0;
+    private static final byte TYPE_BYTE = 1;
+    private static final byte TYPE_SHORT = 2;
+    private static final byte TYPE_CHAR = 3;
+    private static final byte TYPE_FLOAT = 4;
+
+    private final Path root;
+    private final Map<ResourceLocation, DataKey<?>> keys = new HashMap<>();
+
+    // open files are shared by reads and writes to different regions, each of which only locks the file it uses. they
+    // are keyed by path, since views of different sizes are stored in separate files at the same file coordinates
+    private final Map<Path, StoreFile> files = new HashMap<>();
+
+    ColumnDataStore(Path root, Set<DataKey<?>> keys) {
+        this.root = root;
+        for (DataKey<?> key : keys) {
+            this.keys.put(key.getIdentifier(), key);
+        }
+    }
+
+    static ColumnDataStore open(World world, GenerationSettings settings, Set<DataKey<?>> keys) {
+        return new ColumnDataStore(ROOT.resolve(hashSettings(world, settings)), keys);
+    }
+
+    private static String hashSettings(World world, GenerationSettings settings) {
+        // properties are sorted so that the hash does not depend on the order that they were parsed in
+        Map<String, JsonElement> properties = new TreeMap<>();
+        for (Map.Entry<String, JsonElement> entry : settings.serialize().entrySet()) {
+            properties.put(entry.getKey(), entry.getValue());
+        }
+
+        JsonObject root = new JsonObject();
+        root.addProperty("world_type", world.getWorldType().getName());
+        root.addProperty("version", Terrarium.VERSION);
+        root.addProperty("format", FORMAT_VERSION);
+        properties.forEach(root::add);
+
+        return Hashing.murmur3_128().hashString(root.toString(), StandardCharsets.UTF_8).toString();
+    }
+
+    // reads run through the context so that they are prioritized along with the rest of the column's work
+    Future<Optional<Map<DataKey<?>, Optional<?>>>> read(DataView view, DataContext ctx) {
+        return ctx.spawnBlocking(() -> {
+            try {
+                return Optional.ofNullable(this.readNow(view));
+            } catch (IOException e) {
+                Terrarium.LOGGER.warn("Failed to read stored column data at {}", view, e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    void write(DataView view, ColumnData data) {
+        Map<DataKey<?>, Optional<?>> values = new HashMap<>(data.getLoaded());
+
+        IO_EXECUTOR.submit(() -> {
+            try {
+                this.writeNow(view, values);
+            } catch (IOException e) {
+                Terrarium.LOGGER.warn("Failed to write column data at {}", view, e);
+            }
+        });
+    }
+
+    @Nullable
+    Map<DataKey<?>, Optional<?>> readNow(DataView view) throws IOException {
+        int regionX = Math.floorDiv(view.getX(), view.getWidth());
+        int regionY = Math.floorDiv(view.getY(), view.getHeight());
+
+        StoreFile file = this.acquireFile(view, regionX, regionY, false);
+        if (file == null) {
+            return null;
+        }
+
+        // the entry is read into memory while the file is locked, and parsed once the lock is released
+        DataInputStream stream;
+        try {
+            synchronized (file) {
+                stream = file.region.getChunkDataInputStream(regionX & FILE_SIZE - 1, regionY & FILE_SIZE - 1);
+            }
+        } finally {
+            this.releaseFile(file);
+        }
+
+        try (DataInputStream input = stream) {
+            if (input == null) {
+                return null;
+            }
+
+            Map<DataKey<?>, Optional<?>> values = new HashMap<>();
+
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                DataKey<?> key = this.keys.get(new ResourceLocation(input.readUTF()));
+                byte type = input.readByte();
+                if (type == TYPE_ABSENT) {
+                    if (key != null) {
+                        values.put(key, Optional.empty());
+                    }
+                    continue;
+                }
+
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+
+                if (key != null) {
+                    Object value = readValue(key, view, type, ByteBuffer.wrap(bytes));
+                    if (value != null) {
+                        values.put(key, Optional.of(value));
+                    }
+                }
+            }
+
+            return values;
+        }
+    }
+
+    void writeNow(DataView view, Map<DataKey<?>, Optional<?>> values) throws IOException {
+        int regionX = Math.floorDiv(view.getX(), view.getWidth());
+        int regionY = Math.floorDiv(view.getY(), view.getHeight());
+
+        StoreFile file = this.acquireFile(view, regionX, regionY, true);
+        if (file == null) {
+            return;
+        }
+
+        try {
+            synchronized (file) {
+                this.writeEntry(file.region, regionX & FILE_SIZE - 1, regionY & FILE_SIZE - 1, values);
+            }
+        } finally {
+            this.releaseFile(file);
+        }
+    }
+
+    private void writeEntry(RegionFile file, int localX, int localY, Map<DataKey<?>, Optional<?>> values) throws IOException {
+        try (DataOutputStream output = file.getChunkDataOutputStream(localX, localY)) {
+            Map<DataKey<?>, Optional<?>> writable = new HashMap<>();
+            for (Map.Entry<DataKey<?>, Optional<?>> entry : values.entrySet()) {
+                Optional<?> value = entry.getValue();
+                if (!value.isPresent() || getType(value.get()) != TYPE_ABSENT) {
+                    writable.put(entry.getKey(), value);
+                }
+            }
+
+            output.writeInt(writable.size());
+            for (Map.Entry<DataKey<?>, Optional<?>> entry : writable.entrySet()) {
+                output.writeUTF(entry.getKey().getIdentifier().toString());
+
+                Optional<?> value = entry.getValue();
+                if (!value.isPresent()) {
+                    output.writeByte(TYPE_ABSENT);
+                    continue;
+                }
+
+                Object data = ((AbstractRaster<?>) value.get()).getData();
+                output.writeByte(getType(value.get()));
+
+                byte[] bytes = writeData(data);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+    }
+
+    // only rasters backed by primitive arrays can be stored: anything else is computed again when first requested
+    private static byte getType(Object value) {
+        if (value instanceof AbstractRaster) {
+            Object data = ((AbstractRaster<?>) value).getData();
+            if (data instanceof byte[]) {
+                return TYPE_BYTE;
+            } else if (data instanceof short[]) {
+                return TYPE_SHORT;
+            } else if (data instanceof char[]) {
+                return TYPE_CHAR;
+            } else if (data instanceof float[]) {
+                return TYPE_FLOAT;
+            }
+        }
+        return TYPE_ABSENT;
+    }
+
+    private static byte[] writeData(Object data) {
+        if (data instanceof byte[]) {
+            return (byte[]) data;
+        } else if (data instanceof short[]) {
+            short[] array = (short[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * Short.BYTES);
+            buffer.asShortBuffer().put(array);
+            return buffer.array();
+        } else if (data instanceof char[]) {
+            char[] array = (char[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * Character.BYTES);
+            buffer.asCharBuffer().put(array);
+            return buffer.array();
+        } else {
+            float[] array = (float[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * Float.BYTES);
+            buffer.asFloatBuffer().put(array);
+            return buffer.array();
+        }
+    }
+
+    @Nullable
+    private static Object readValue(DataKey<?> key, DataView view, byte type, ByteBuffer buffer) {
+        Object value = key.createDefault(view);
+        if (getType(value) != type) {
+            return null;
+        }
+
+        AbstractRaster<?> raster = (AbstractRaster<?>) value;
+        if (raster.getByteSize() != buffer.remaining()) {
+            return null;
+        }
+
+        Object data = raster.getDataForWrite();
+        if (data instanceof byte[]) {
+            buffer.get((byte[]) data);
+        } else if (data instanceof short[]) {
+            buffer.asShortBuffer().get((short[]) data);
+        } else if (data instanceof char[]) {
+            buffer.asCharBuffer().get((char[]) data);
+        } else if (data instanceof float[]) {
+            buffer.asFloatBuffer().get((float[]) data);
+        }
+
+        return value;
+    }
+
+    // the returned file is kept open until it is released
+    @Nullable
+    private StoreFile acquireFile(DataView view, int regionX, int regionY, boolean create) throws IOException {
+        int fileX = regionX >> 5;
+        int fileY = regionY >> 5;
+
+        Path directory = this.root.resolve(view.getWidth() + "x" + view.getHeight());
+        Path path = directory.resolve("r." + fileX + "." + fileY + ".bin");
+
+        synchronized (this.files) {
+            StoreFile file = this.files.get(path);
+            if (file == null) {
+                if (!create && !Files.exists(path)) {
+                    return null;
+                }
+
+                if (this.files.size() >= MAX_OPEN_FILES) {
+                    this.closeIdleFiles();
+                }
+
+                Files.createDirectories(directory);
+                file = new StoreFile(new RegionFile(path.toFile()));
+                this.files.put(path, file);
+            }
+
+            file.users++;
+            return file;
+        }
+    }
+
+    private void releaseFile(StoreFile file) {
+        synchronized (this.files) {
+            file.users--;
+        }
+    }
+
+    // files still in use are left open, so we may briefly go over the limit while many regions are being accessed
+    private void closeIdleFiles() throws IOException {
+        Iterator<StoreFile> iterator = this.files.values().iterator();
+        while (iterator.hasNext()) {
+            StoreFile file = iterator.next();
+            if (file.users <= 0) {
+                file.region.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        IO_EXECUTOR.submit(() -> {
+            try {
+                synchronized (this.files) {
+                    for (StoreFile file : this.files.values()) {
+                        file.region.close();
+                    }
+                    this.files.clear();
+                }
+            } catch (IOException e) {
+                Terrarium.LOGGER.warn("Failed to close column data store", e);
+            }
+        });
+    }
+
+    private static class StoreFile {
+        final RegionFile region;
+        int users;
+
+        StoreFile(RegionFile region) {
+            this.region = region;
+        }
+    }
+}
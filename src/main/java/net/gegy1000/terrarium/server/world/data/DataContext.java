@@ -0,0 +1,393 @@
+package net.gegy1000.terrarium.server.world.data;
+
+import net.gegy1000.justnow.Waker;
+import net.gegy1000.justnow.future.Future;
+import net.gegy1000.justnow.future.MaybeDone;
+import net.gegy1000.justnow.tuple.Unit;
+import net.gegy1000.terrarium.server.world.data.raster.AbstractRaster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public final class DataContext implements DataExecutor {
+    public static final int PRIORITY_URGENT = Integer.MIN_VALUE;
+    public static final int PRIORITY_DEFAULT = 0;
+    public static final int PRIORITY_UNTRACKED = Integer.MAX_VALUE;
+
+    private final PriorityScheduler scheduler;
+    private final DataOp.Fusion fusion;
+    private final Map<Key, Entry<?>> evaluated = new HashMap<>();
+
+    // ops whose results are kept after all of their current consumers have taken them, counted by the number of keys
+    // yet to be loaded that depend on them, so that they are not computed again when those keys are loaded
+    private final Map<DataOp<?>, Integer> retained = new HashMap<>();
+
+    private final Set<Runnable> cancelListeners = new LinkedHashSet<>();
+    private volatile boolean cancelled;
+
+    private volatile int priority = PRIORITY_DEFAULT;
+
+    // time spent on each key, op and tile source for this context, used to attribute stalls on the server thread
+    private final Map<String, AtomicLong> timings = new ConcurrentHashMap<>();
+
+    // time spent computing the inputs of the op being computed on this thread, so that each op is only recorded for
+    // the time it took itself
+    private static final ThreadLocal<long[]> INPUT_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    // set when a source failed to load, meaning that results may have been produced from fallback data
+    private volatile boolean failed;
+
+    DataContext(PriorityScheduler scheduler, DataOp.Fusion fusion) {
+        this.scheduler = scheduler;
+        this.fusion = fusion;
+    }
+
+    DataOp.Fusion getFusion() {
+        return this.fusion;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (this.cancelled) return;
+
+        this.scheduler.execute(this::getPriority, () -> {
+            if (!this.cancelled) {
+                command.run();
+            }
+        });
+    }
+
+    // abandons all work that has not yet started: anything still waiting on this context's results after this point
+    // must go through orOnCancel, or it will never complete
+    void cancel() {
+        List<Runnable> listeners;
+        synchronized (this.cancelListeners) {
+            if (this.cancelled) return;
+            this.cancelled = true;
+
+            listeners = new ArrayList<>(this.cancelListeners);
+            this.cancelListeners.clear();
+        }
+
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+
+        this.releaseTakenResults();
+    }
+
+    void retain(Collection<DataOp<?>> ops) {
+        synchronized (this.retained) {
+            for (DataOp<?> op : ops) {
+                this.retained.merge(op, 1, Integer::sum);
+            }
+        }
+    }
+
+    void release(Collection<DataOp<?>> ops) {
+        boolean released = false;
+        synchronized (this.retained) {
+            for (DataOp<?> op : ops) {
+                Integer count = this.retained.get(op);
+                if (count == null) {
+                    continue;
+                }
+                if (count > 1) {
+                    this.retained.put(op, count - 1);
+                } else {
+                    this.retained.remove(op);
+                    released = true;
+                }
+            }
+        }
+
+        if (released) {
+            this.releaseTakenResults();
+        }
+    }
+
+    // stops retaining any results, such that everything already taken by all of its consumers is released
+    void releaseRetained() {
+        synchronized (this.retained) {
+            this.retained.clear();
+        }
+        this.releaseTakenResults();
+    }
+
+    private boolean isRetained(DataOp<?> op) {
+        if (this.cancelled) {
+            return false;
+        }
+        synchronized (this.retained) {
+            return this.retained.containsKey(op);
+        }
+    }
+
+    private void releaseTakenResults() {
+        // entries are locked while computing, which may in turn lock the map, so they must not be locked under it
+        List<Map.Entry<Key, Entry<?>>> entries;
+        synchronized (this.evaluated) {
+            entries = new ArrayList<>(this.evaluated.entrySet());
+        }
+
+        boolean released = false;
+        for (Map.Entry<Key, Entry<?>> entry : entries) {
+            if (!this.isRetained(entry.getKey().op)) {
+                released |= entry.getValue().releaseIfTaken();
+            }
+        }
+
+        if (released) {
+            synchronized (this.evaluated) {
+                this.evaluated.values().removeIf(entry -> entry.released);
+            }
+        }
+    }
+
+    void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getPriority() {
+        return this.priority;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    public void recordTime(String cause, long nanos) {
+        this.timings.computeIfAbsent(cause, c -> new AtomicLong()).addAndGet(nanos);
+    }
+
+    Map<String, Long> getTimings() {
+        Map<String, Long> timings = new HashMap<>(this.timings.size());
+        this.timings.forEach((cause, nanos) -> timings.put(cause, nanos.get()));
+        return timings;
+    }
+
+    public void markFailed() {
+        this.failed = true;
+    }
+
+    public boolean hasFailed() {
+        return this.failed;
+    }
+
+    public void onCancel(Runnable listener) {
+        synchronized (this.cancelListeners) {
+            if (!this.cancelled) {
+                this.cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    // drops a listener once the work that it would abandon has completed, rather than holding it until cancelled
+    public void removeCancelListener(Runnable listener) {
+        synchronized (this.cancelListeners) {
+            this.cancelListeners.remove(listener);
+        }
+    }
+
+    // waits on the given future, unless this context is cancelled before it completes: the work it depends on will
+    // then never run, so it is abandoned for the future produced by the fallback
+    public <T> Future<T> orOnCancel(Future<T> future, Supplier<Future<T>> fallback) {
+        CancelFallback<T> state = new CancelFallback<>(future, fallback);
+        return state::poll;
+    }
+
+    // registers a consumer of the given op and starts any asynchronous work that it depends on. every call must be
+    // followed by exactly one call to compute for the same op and view once the returned future has completed
+    @SuppressWarnings("unchecked")
+    <T> Future<Unit> prepare(DataOp<T> op, DataView view) {
+        Key key = new Key(op, view);
+
+        // ops are prepared under the lock so that an op is only ever prepared once: this lock is re-entrant and
+        // preparing only schedules work, so it is held briefly
+        Entry<T> entry;
+        synchronized (this.evaluated) {
+            entry = (Entry<T>) this.evaluated.get(key);
+            if (entry == null || !entry.tryAddConsumer()) {
+                entry = new Entry<>();
+                entry.tryAddConsumer();
+                entry.prepared = Future.maybeDone(op.prepare(view, this, entry::resolve));
+                this.evaluated.put(key, entry);
+            }
+        }
+
+        return entry.prepared.map(u -> Unit.INSTANCE);
+    }
+
+    // computes the result of a prepared op on the current thread, unless it has already been computed by another
+    // consumer or was produced asynchronously while preparing. an entry is only released once every consumer that was
+    // prepared against it has taken its result, and only leaves the map once released, so a prepared consumer always
+    // finds its own entry here: we never need to wait on the op being prepared again
+    @SuppressWarnings("unchecked")
+    <T> Optional<T> compute(DataOp<T> op, DataView view) {
+        Entry<T> entry;
+        synchronized (this.evaluated) {
+            entry = (Entry<T>) this.evaluated.get(new Key(op, view));
+        }
+
+        if (entry == null) {
+            throw new IllegalStateException("Cannot compute op that has not been prepared");
+        }
+
+        synchronized (entry) {
+            if (entry.released) {
+                throw new IllegalStateException("Cannot compute op that has already been taken by all its consumers");
+            }
+            if (!entry.resolved) {
+                entry.resolve(this.computeTimed(op, view));
+            }
+            return entry.take(this.isRetained(op));
+        }
+    }
+
+    private <T> Optional<T> computeTimed(DataOp<T> op, DataView view) {
+        long[] inputNanos = INPUT_NANOS.get();
+        long outerInputNanos = inputNanos[0];
+        inputNanos[0] = 0;
+
+        long start = System.nanoTime();
+        try {
+            return op.compute(view, this);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            this.recordTime("op " + op.getName(), nanos - inputNanos[0]);
+            inputNanos[0] = outerInputNanos + nanos;
+        }
+    }
+
+    private final class CancelFallback<T> {
+        Future<T> future;
+        final Supplier<Future<T>> fallback;
+        boolean fellBack;
+
+        volatile Waker waker;
+        boolean listening;
+
+        CancelFallback(Future<T> future, Supplier<Future<T>> fallback) {
+            this.future = future;
+            this.fallback = fallback;
+        }
+
+        synchronized T poll(Waker waker) {
+            if (!this.fellBack) {
+                if (DataContext.this.cancelled) {
+                    this.fellBack = true;
+                    this.future = this.fallback.get();
+                } else {
+                    // a single listener wakes whoever polled us last, so that we get to fall back once cancelled
+                    this.waker = waker;
+                    if (!this.listening) {
+                        this.listening = true;
+                        DataContext.this.onCancel(() -> this.waker.wake());
+                    }
+                }
+            }
+            return this.future.poll(waker);
+        }
+    }
+
+    private static final class Entry<T> {
+        MaybeDone<?> prepared;
+
+        Optional<T> result;
+        boolean resolved;
+
+        int consumers;
+        int taken;
+        volatile boolean released;
+
+        synchronized boolean tryAddConsumer() {
+            if (this.released) return false;
+            this.consumers++;
+            return true;
+        }
+
+        synchronized void resolve(Optional<T> result) {
+            if (!this.resolved) {
+                this.result = result;
+                this.resolved = true;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized Optional<T> take(boolean retain) {
+            Optional<T> result = this.result;
+            if (!result.isPresent() || !(result.get() instanceof AbstractRaster)) {
+                return result;
+            }
+
+            // every consumer receives its own copy-on-write handle, so a copy is only made if a shared raster is
+            // written to. once every consumer has its handle, we drop our reference so that the last writer can
+            // mutate in place, unless we are retaining results. any later consumer will need to evaluate this op again.
+            AbstractRaster<?> raster = (AbstractRaster<?>) result.get();
+            T handle = (T) raster.share();
+            if (++this.taken >= this.consumers && !retain) {
+                this.release(raster);
+            }
+
+            return Optional.of(handle);
+        }
+
+        synchronized boolean releaseIfTaken() {
+            if (this.released || !this.resolved || this.taken < this.consumers) {
+                return false;
+            }
+
+            Optional<T> result = this.result;
+            if (!result.isPresent() || !(result.get() instanceof AbstractRaster)) {
+                return false;
+            }
+
+            this.release((AbstractRaster<?>) result.get());
+            return true;
+        }
+
+        private void release(AbstractRaster<?> raster) {
+            raster.release();
+            this.released = true;
+            this.result = null;
+        }
+    }
+
+    private static final class Key {
+        final DataOp<?> op;
+        final DataView view;
+
+        Key(DataOp<?> op, DataView view) {
+            this.op = op;
+            this.view = view;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+
+            if (obj instanceof Key) {
+                Key key = (Key) obj;
+                return key.op == this.op && key.view.equals(this.view);
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(this.op) + this.view.hashCode();
+        }
+    }
+}
@@ -1,80 +1,300 @@
 package net.gegy1000.terrarium.server.world.data;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import net.gegy1000.justnow.future.Future;
+import net.gegy1000.justnow.tuple.Unit;
 import net.gegy1000.terrarium.Terrarium;
+import net.gegy1000.terrarium.server.config.TerrariumConfig;
+import net.gegy1000.terrarium.server.util.Vec2i;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 public final class DataGenerator {
-    public static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
-            new ThreadFactoryBuilder()
-                    .setDaemon(true)
-                    .setNameFormat("terrarium-data-worker")
-                    .build()
-    );
-
-    private static final DataExecutor DATA_EXECUTOR = EXECUTOR::execute;
+    public static final ExecutorService EXECUTOR = createExecutor();
+    public static final PriorityScheduler SCHEDULER = new PriorityScheduler(EXECUTOR);
 
     private final ImmutableMap<DataKey<?>, DataOp<?>> attachedData;
+    private final ImmutableSet<DataKey<?>> prefetchKeys;
 
-    public DataGenerator(ImmutableMap<DataKey<?>, DataOp<?>> attachedData) {
+    // every op that each key is computed from, including the key's own op
+    private final ImmutableMap<DataKey<?>, Set<DataOp<?>>> dependencies;
+
+    private final DataOp.Fusion fusion;
+
+    public DataGenerator(ImmutableMap<DataKey<?>, DataOp<?>> attachedData, ImmutableSet<DataKey<?>> prefetchKeys) {
         this.attachedData = attachedData;
+        this.prefetchKeys = prefetchKeys;
+
+        ImmutableMap.Builder<DataKey<?>, Set<DataOp<?>>> dependencies = ImmutableMap.builder();
+        attachedData.forEach((key, op) -> dependencies.put(key, collectDependencies(op)));
+        this.dependencies = dependencies.build();
+
+        // keys consume their ops too, so that an op that is also fused into another is not evaluated twice
+        this.fusion = DataOp.Fusion.of(attachedData.values());
+    }
+
+    public DataGenerator(ImmutableMap<DataKey<?>, DataOp<?>> attachedData) {
+        this(attachedData, attachedData.keySet());
+    }
+
+    private static Set<DataOp<?>> collectDependencies(DataOp<?> op) {
+        Set<DataOp<?>> dependencies = new HashSet<>();
+        Deque<DataOp<?>> queue = new ArrayDeque<>();
+        queue.add(op);
+
+        while (!queue.isEmpty()) {
+            DataOp<?> next = queue.poll();
+            if (dependencies.add(next)) {
+                Collections.addAll(queue, next.getInputs());
+            }
+        }
+
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+    private static ExecutorService createExecutor() {
+        int parallelism = TerrariumConfig.dataWorkerThreads;
+        if (parallelism <= 0) {
+            parallelism = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+        }
+
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("terrarium-data-worker-" + thread.getPoolIndex());
+            thread.setContextClassLoader(DataGenerator.class.getClassLoader());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        Thread.UncaughtExceptionHandler exceptionHandler = (thread, throwable) -> {
+            Terrarium.LOGGER.error("Uncaught exception on {}", thread.getName(), throwable);
+        };
+
+        // async mode schedules submitted tasks in FIFO order, which suits our event-style tasks
+        return new ForkJoinPool(parallelism, threadFactory, exceptionHandler, true);
     }
 
     public static Builder builder() {
         return new Builder();
     }
 
+    DataContext createContext() {
+        return new DataContext(SCHEDULER, this.fusion);
+    }
+
     public Future<ColumnData> generateOnly(DataView view, Collection<DataKey<?>> keys) {
-        ImmutableMap.Builder<DataKey<?>, Future<Optional<?>>> futures = ImmutableMap.builder();
+        return this.generateOnly(view, keys, this.createContext());
+    }
+
+    Future<ColumnData> generateOnly(DataView view, Collection<DataKey<?>> keys, DataContext ctx) {
+        List<DataKey<?>> generateKeys = new ArrayList<>(keys.size());
+        List<Future<Unit>> prepared = new ArrayList<>(keys.size());
         for (DataKey<?> key : keys) {
             DataOp<?> op = this.attachedData.get(key);
             if (op != null) {
-                Future<Optional<?>> future = op.apply(view, DATA_EXECUTOR).handle((result, throwable) -> {
-                    if (throwable != null) {
-                        Terrarium.LOGGER.error("Failed to load DataOp result", throwable);
-                        return Optional.empty();
-                    }
-                    return result;
-                });
-
-                futures.put(key, future);
+                generateKeys.add(key);
+                prepared.add(ctx.prepare(op, view));
+            }
+        }
+
+        // keys that were not requested up-front are computed against the same context when first asked for
+        ColumnData.Source source = this.lazySource(view, ctx, keys);
+
+        // once every source has loaded, all requested keys are computed together as one task
+        return Future.joinAll(prepared.stream()).andThen(u -> ctx.spawnBlocking(() -> {
+            Map<DataKey<?>, Optional<?>> result = new HashMap<>(keys.size());
+            for (DataKey<?> key : keys) {
+                result.put(key, Optional.empty());
+            }
+
+            for (DataKey<?> key : generateKeys) {
+                try {
+                    long start = System.nanoTime();
+                    result.put(key, ctx.compute(this.attachedData.get(key), view));
+                    ctx.recordTime("key " + key, System.nanoTime() - start);
+                } catch (Throwable t) {
+                    Terrarium.LOGGER.error("Failed to compute DataOp result for {}", key, t);
+                    ctx.markFailed();
+                }
             }
+
+            return new ColumnData(view, this.attachedData.keySet(), result, source);
+        }));
+    }
+
+    // keys that were not generated up-front are loaded through the same context when first asked for. until they are,
+    // the context retains the results of the ops that they depend on, so that those shared with the keys that were
+    // generated are not computed again. everything else is released as soon as its consumers have taken it
+    @Nullable
+    private ColumnData.Source lazySource(DataView view, DataContext ctx, Collection<DataKey<?>> loadedKeys) {
+        Set<DataKey<?>> lazyKeys = new HashSet<>(this.attachedData.keySet());
+        lazyKeys.removeAll(loadedKeys);
+        if (lazyKeys.isEmpty()) {
+            return null;
+        }
+
+        for (DataKey<?> key : lazyKeys) {
+            ctx.retain(this.dependencies.get(key));
+        }
+
+        return new LazySource(view, ctx, lazyKeys);
+    }
+
+    private Future<Optional<?>> apply(DataKey<?> key, DataView view, DataContext ctx) {
+        DataOp<?> op = this.attachedData.get(key);
+        if (op == null) {
+            return Future.ready(Optional.empty());
         }
 
-        return Future.joinAll(futures.build())
-                .map(result -> {
-                    for (DataKey<?> key : keys) {
-                        if (!result.containsKey(key)) {
-                            result.put(key, Optional.empty());
-                        }
-                    }
-                    return new ColumnData(view, result);
-                });
+        long start = System.nanoTime();
+        return op.apply(view, ctx).handle((result, throwable) -> {
+            ctx.recordTime("lazy key " + key, System.nanoTime() - start);
+            if (throwable != null) {
+                Terrarium.LOGGER.error("Failed to load DataOp result", throwable);
+                return Optional.empty();
+            }
+            return result;
+        });
+    }
+
+    // rebuilds column data from previously stored keys, computing any others against the given context when needed
+    ColumnData restore(DataView view, Map<DataKey<?>, Optional<?>> stored, DataContext ctx) {
+        return new ColumnData(view, this.attachedData.keySet(), stored, this.lazySource(view, ctx, stored.keySet()));
+    }
+
+    Set<DataKey<?>> getKeys() {
+        return this.attachedData.keySet();
     }
 
     public Future<ColumnData> generate(DataView view) {
         return this.generateOnly(view, this.attachedData.keySet());
     }
 
+    Future<ColumnData> generatePrefetched(DataView view, DataContext ctx) {
+        return this.generateOnly(view, this.prefetchKeys, ctx);
+    }
+
+    // generates only the given keys, and the ops that they depend on, over a single point at each position. every point
+    // is its own view, so ops are not shared between them: a source tile covering several points is only loaded once
+    // because later points find it in the tile cache
+    public Future<List<ColumnData>> generatePoints(List<Vec2i> points, Collection<DataKey<?>> keys) {
+        DataContext ctx = this.createContext();
+        ctx.setPriority(DataContext.PRIORITY_URGENT);
+
+        return Future.joinAll(points.stream().map(point -> this.generateOnly(DataView.square(point.x, point.y, 1), keys, ctx)))
+                .map(ArrayList::new);
+    }
+
     @SuppressWarnings("unchecked")
     public <T> Future<Optional<T>> generateOne(DataView view, DataKey<T> key) {
         DataOp<?> op = this.attachedData.get(key);
         if (op != null) {
-            return op.apply(view, DATA_EXECUTOR).map(o -> (Optional<T>) o);
+            DataContext ctx = this.createContext();
+            return op.apply(view, ctx).map(o -> (Optional<T>) o);
         }
         return Future.ready(Optional.empty());
     }
 
+    // lazy keys may be requested after the context they were generated with has been cancelled, such as when their
+    // region was dropped or evicted, at which point its work would never run: they are then loaded through a fresh
+    // context, shared by every key that needs it
+    private final class LazySource implements ColumnData.Source {
+        private final DataView view;
+        private final DataContext ctx;
+
+        // keys that have not yet been loaded, each holding on to the ops that it depends on in both contexts
+        private final Set<DataKey<?>> pending;
+        private DataContext fallbackCtx;
+
+        LazySource(DataView view, DataContext ctx, Set<DataKey<?>> pending) {
+            this.view = view;
+            this.ctx = ctx;
+            this.pending = pending;
+        }
+
+        @Override
+        public Future<Optional<?>> load(DataKey<?> key) {
+            Future<Optional<?>> future;
+            if (this.ctx.isCancelled()) {
+                future = DataGenerator.this.apply(key, this.view, this.fallbackCtx());
+            } else {
+                future = this.ctx.orOnCancel(
+                        DataGenerator.this.apply(key, this.view, this.ctx),
+                        () -> DataGenerator.this.apply(key, this.view, this.fallbackCtx())
+                );
+            }
+
+            return future.map(result -> {
+                this.onLoaded(key);
+                return result;
+            });
+        }
+
+        private synchronized DataContext fallbackCtx() {
+            if (this.fallbackCtx == null) {
+                this.fallbackCtx = DataGenerator.this.createContext();
+                this.fallbackCtx.setPriority(this.ctx.getPriority());
+                for (DataKey<?> key : this.pending) {
+                    this.fallbackCtx.retain(DataGenerator.this.dependencies.get(key));
+                }
+            }
+            return this.fallbackCtx;
+        }
+
+        private synchronized void onLoaded(DataKey<?> key) {
+            if (this.pending.remove(key)) {
+                this.release(DataGenerator.this.dependencies.get(key));
+            }
+        }
+
+        private void release(Set<DataOp<?>> ops) {
+            this.ctx.release(ops);
+            if (this.fallbackCtx != null) {
+                this.fallbackCtx.release(ops);
+            }
+        }
+
+        @Override
+        public Map<String, Long> getTimings() {
+            Map<String, Long> timings = this.ctx.getTimings();
+            DataContext fallbackCtx;
+            synchronized (this) {
+                fallbackCtx = this.fallbackCtx;
+            }
+            if (fallbackCtx != null) {
+                fallbackCtx.getTimings().forEach((cause, nanos) -> timings.merge(cause, nanos, Long::sum));
+            }
+            return timings;
+        }
+
+        @Override
+        public synchronized void close() {
+            for (DataKey<?> key : this.pending) {
+                this.release(DataGenerator.this.dependencies.get(key));
+            }
+            this.pending.clear();
+        }
+    }
+
     public static class Builder {
         private final Map<DataKey<?>, DataOp<?>> attachedData = new HashMap<>();
+        private final Set<DataKey<?>> prefetchKeys = new HashSet<>();
 
         private Builder() {
         }
@@ -84,6 +304,12 @@ public final class DataGenerator {
             return this;
         }
 
+        // keys that are generated as soon as a column is tracked; all other keys are generated on first use
+        public Builder prefetch(DataKey<?>... keys) {
+            Collections.addAll(this.prefetchKeys, keys);
+            return this;
+        }
+
         @SuppressWarnings("unchecked")
         public <T> DataOp<T> get(DataKey<T> key) {
             return (DataOp<T>) this.attachedData.get(key);
@@ -91,11 +317,16 @@ public final class DataGenerator {
 
         @SuppressWarnings("unchecked")
         public <T> DataOp<T> remove(DataKey<T> key) {
+            this.prefetchKeys.remove(key);
             return (DataOp<T>) this.attachedData.remove(key);
         }
 
         public DataGenerator build() {
-            return new DataGenerator(ImmutableMap.copyOf(this.attachedData));
+            ImmutableMap<DataKey<?>, DataOp<?>> attachedData = ImmutableMap.copyOf(this.attachedData);
+            if (this.prefetchKeys.isEmpty()) {
+                return new DataGenerator(attachedData);
+            }
+            return new DataGenerator(attachedData, ImmutableSet.copyOf(Sets.intersection(this.prefetchKeys, attachedData.keySet())));
         }
     }
 }
@@ -1,102 +1,412 @@
 package net.gegy1000.terrarium.server.world.data;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.gegy1000.justnow.future.Future;
-import net.gegy1000.justnow.future.MaybeDone;
+import net.gegy1000.justnow.tuple.Unit;
+import net.gegy1000.terrarium.Terrarium;
 import net.gegy1000.terrarium.server.world.data.op.DataFunction;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
+// ops are either asynchronous sources, which wait on tiles or other I/O, or computed from their inputs. computed
+// ops are only prepared as futures: once every source they depend on is available, they are computed together on
+// a single task rather than each being scheduled separately
 public final class DataOp<T> implements DataFunction<T> {
-    private final DataFunction<T> function;
+    private static final RowKernel NO_KERNEL = (y, start, end) -> {};
+    private static final DataOp<?>[] NO_INPUTS = new DataOp<?>[0];
 
-    private Cache<DataView, MaybeDone<Optional<T>>> cache;
-    private Function<T, T> copy;
+    private final Prepare<T> prepare;
+    private final Compute<T> compute;
+    private final boolean source;
 
-    private DataOp(DataFunction<T> function) {
-        this.function = function;
+    // the ops that this op is computed from, so that generators can tell which ops each of their keys depends on
+    private final DataOp<?>[] inputs;
+
+    // where this op was built, so that the time spent computing it can be attributed to something recognizable
+    private final String name;
+
+    // present for pointwise stages, so that they can be fused into the pass of a pointwise stage built on top of them
+    @Nullable
+    private final PixelNode<T> pixels;
+
+    private DataOp(DataOp<?>[] inputs, Prepare<T> prepare, Compute<T> compute, boolean source, @Nullable PixelNode<T> pixels) {
+        this.inputs = inputs;
+        this.prepare = prepare;
+        this.compute = compute;
+        this.source = source;
+        this.pixels = pixels;
+        this.name = nameFromCaller();
+    }
+
+    private static String nameFromCaller() {
+        String opClass = DataOp.class.getName();
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (!className.equals(opClass) && !className.startsWith(opClass + "$")) {
+                return className.substring(className.lastIndexOf('.') + 1) + "." + element.getMethodName();
+            }
+        }
+        return "unknown";
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    DataOp<?>[] getInputs() {
+        return this.inputs;
+    }
+
+    private static <T> DataOp<T> computed(DataOp<?>[] inputs, Inputs prepare, Compute<T> compute) {
+        return new DataOp<>(inputs, (view, ctx, resolve) -> prepare.prepare(view, ctx), compute, false, null);
     }
 
     public static <T> DataOp<T> of(DataFunction<T> function) {
-        return new DataOp<>(function);
+        Prepare<T> prepare = (view, ctx, resolve) -> {
+            return function.apply(view, ctx).handle((result, throwable) -> {
+                if (throwable != null) {
+                    Terrarium.LOGGER.error("Failed to load DataOp result", throwable);
+                    ctx.markFailed();
+                    result = Optional.empty();
+                }
+                resolve.accept(result);
+                return Unit.INSTANCE;
+            });
+        };
+
+        // sources are resolved while preparing, so they never need to be computed
+        return new DataOp<>(NO_INPUTS, prepare, (view, ctx) -> Optional.empty(), true, null);
     }
 
     public static <T> DataOp<T> ofBlocking(Function<DataView, T> function) {
-        return new DataOp<>((view, executor) -> {
-            return executor.spawnBlocking(() -> {
-                T result = function.apply(view);
-                return Optional.of(result);
-            });
-        });
+        return computed(NO_INPUTS, DataOp::noInputs, (view, ctx) -> Optional.of(function.apply(view)));
     }
 
     public static <T> DataOp<T> ready(Optional<T> result) {
-        return new DataOp<>((view, executor) -> Future.ready(result));
+        return computed(NO_INPUTS, DataOp::noInputs, (view, ctx) -> result);
     }
 
-    public DataOp<T> cached(Function<T, T> copy) {
-        this.cache = CacheBuilder.newBuilder()
-                .maximumSize(4)
-                .expireAfterAccess(5, TimeUnit.SECONDS)
-                .build();
-        this.copy = copy;
-        return this;
+    public static <T> PixelStage<T> pixels(T result, RowKernel kernel) {
+        return new PixelStage<>(result, kernel);
     }
 
-    @Override
-    public Future<Optional<T>> apply(DataView view, DataExecutor executor) {
-        if (this.cache == null) return this.function.apply(view, executor);
+    Future<?> prepare(DataView view, DataContext ctx, Consumer<Optional<T>> resolve) {
+        if (this.pixels != null) {
+            return ctx.getFusion().get(this).prepare(view, ctx);
+        }
+        return this.prepare.prepare(view, ctx, resolve);
+    }
 
-        try {
-            MaybeDone<Optional<T>> maybeDone = this.cache.get(view, () -> {
-                return Future.maybeDone(this.function.apply(view, executor));
-            });
-            return maybeDone.map(u -> {
-                if (!maybeDone.isDone()) return Optional.empty();
-                return maybeDone.getResult().map(this.copy);
-            });
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
+    Optional<T> compute(DataView view, DataContext ctx) {
+        if (this.pixels != null) {
+            return ctx.getFusion().get(this).compute(view, ctx);
         }
+        return this.compute.compute(view, ctx);
+    }
+
+    @Override
+    public Future<Optional<T>> apply(DataView view, DataContext ctx) {
+        Future<Unit> prepared = ctx.prepare(this, view);
+        if (this.source) {
+            return prepared.map(u -> ctx.compute(this, view));
+        }
+        return prepared.andThen(u -> ctx.spawnBlocking(() -> ctx.compute(this, view)));
     }
 
     public <U> DataOp<U> map(BiFunction<T, DataView, U> map) {
-        return DataOp.of((view, executor) -> {
-            Future<Optional<T>> future = this.apply(view, executor);
-            return future.map(opt -> {
-                return opt.map(result -> map.apply(result, view));
-            });
-        });
+        return computed(
+                new DataOp<?>[] { this },
+                (view, ctx) -> ctx.prepare(this, view),
+                (view, ctx) -> ctx.compute(this, view).map(result -> map.apply(result, view))
+        );
     }
 
     public <U> DataOp<U> mapBlocking(BiFunction<T, DataView, U> map) {
-        return DataOp.of((view, executor) -> {
-            Future<Optional<T>> future = this.apply(view, executor);
-            return future.andThen(opt -> {
-                return executor.spawnBlocking(() -> {
-                    return opt.map(result -> map.apply(result, view));
-                });
-            });
-        });
+        return this.map(map);
+    }
+
+    // computes from this op sampled over a different view, such as a larger or offset area
+    public <U> DataOp<U> resample(UnaryOperator<DataView> sourceView, Resample<T, U> resample) {
+        return computed(
+                new DataOp<?>[] { this },
+                (view, ctx) -> ctx.prepare(this, sourceView.apply(view)),
+                (view, ctx) -> {
+                    DataView srcView = sourceView.apply(view);
+                    return ctx.compute(this, srcView).map(source -> resample.apply(view, srcView, source));
+                }
+        );
+    }
+
+    // always present: holds the result of this op, which may be absent
+    public DataOp<Optional<T>> optional() {
+        return computed(
+                new DataOp<?>[] { this },
+                (view, ctx) -> ctx.prepare(this, view),
+                (view, ctx) -> Optional.of(ctx.compute(this, view))
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    public <U> DataOp<U> mapPixels(PixelMap<T, U> map) {
+        return fromPixels(new PixelNode<>(new DataOp<?>[] { this }, (view, values) -> map.bind(view, (T) values[0])));
     }
 
     public static <A, B, R> DataOp<R> map2(DataOp<A> a, DataOp<B> b, Map2<A, B, R> map) {
-        return DataOp.of((view, executor) -> {
-            return Future.map2(a.apply(view, executor), b.apply(view, executor), (aOption, bOption) -> {
-                if (aOption.isPresent() && bOption.isPresent()) {
-                    return Optional.of(map.apply(view, aOption.get(), bOption.get()));
+        return computed(
+                new DataOp<?>[] { a, b },
+                (view, ctx) -> Future.map2(ctx.prepare(a, view), ctx.prepare(b, view), (ua, ub) -> Unit.INSTANCE),
+                (view, ctx) -> {
+                    Optional<A> aOption = ctx.compute(a, view);
+                    Optional<B> bOption = ctx.compute(b, view);
+                    if (aOption.isPresent() && bOption.isPresent()) {
+                        return Optional.of(map.apply(view, aOption.get(), bOption.get()));
+                    }
+                    return Optional.empty();
                 }
-                return Optional.empty();
-            });
-        });
+        );
+    }
+
+    // only stages along the first input are fused: the second input is evaluated as its own node, given that
+    // side inputs are usually shared with other consumers and fusing them would repeat their work
+    @SuppressWarnings("unchecked")
+    public static <A, B, R> DataOp<R> map2Pixels(DataOp<A> a, DataOp<B> b, PixelMap2<A, B, R> map) {
+        return fromPixels(new PixelNode<>(new DataOp<?>[] { a, b }, (view, values) -> map.bind(view, (A) values[0], (B) values[1])));
+    }
+
+    private static <T> DataOp<T> fromPixels(PixelNode<T> pixels) {
+        return new DataOp<>(pixels.inputs, null, null, false, pixels);
+    }
+
+    // evaluates this op as its own node when used as the primary input of a pointwise stage
+    @SuppressWarnings("unchecked")
+    private Pointwise<T> asNode() {
+        return new Pointwise<>(new DataOp<?>[] { this }, (view, inputs) -> pixels((T) inputs[0], NO_KERNEL));
+    }
+
+    private static Future<Unit> noInputs(DataView view, DataContext ctx) {
+        return Future.ready(Unit.INSTANCE);
     }
 
     public interface Map2<A, B, R> {
         R apply(DataView view, A a, B b);
     }
+
+    public interface Resample<T, U> {
+        U apply(DataView view, DataView sourceView, T source);
+    }
+
+    // binds a pointwise stage to its inputs: the returned kernel may only read the row of its inputs that it is applied
+    // to, which lies between the given indices into their arrays, and the inputs are not yet computed when bind is
+    // called. stages should fetch the arrays they access while binding, through getDataForWrite for any that they
+    // write to
+    public interface PixelMap<S, T> {
+        PixelStage<T> bind(DataView view, S source);
+    }
+
+    public interface PixelMap2<A, B, T> {
+        PixelStage<T> bind(DataView view, A a, B b);
+    }
+
+    // applies a stage to row y of the view, from the start index up to the end index of its arrays, such that the
+    // pixel at index i is at x = i - start
+    public interface RowKernel {
+        void apply(int y, int start, int end);
+    }
+
+    public static final class PixelStage<T> {
+        private final T result;
+        private final RowKernel kernel;
+
+        private PixelStage(T result, RowKernel kernel) {
+            this.result = result;
+            this.kernel = kernel;
+        }
+
+        // fused stages are applied one after another to each row, so that every stage is called once per row while
+        // the row is still in cache
+        private <U> PixelStage<U> then(PixelStage<U> next) {
+            RowKernel first = this.kernel;
+            RowKernel second = next.kernel;
+            if (first == NO_KERNEL) {
+                return next;
+            }
+            return new PixelStage<>(next.result, (y, start, end) -> {
+                first.apply(y, start, end);
+                second.apply(y, start, end);
+            });
+        }
+    }
+
+    // how the pointwise stages of a generator's graph are evaluated. a stage is fused into the pass of the stage built
+    // on top of it only if nothing else in the graph consumes it, since fusing it into each of several consumers would
+    // repeat its work. consumers are counted per graph, given that ops may be shared between generators
+    static final class Fusion {
+        private final Map<DataOp<?>, Pointwise<?>> pointwise;
+
+        private Fusion(Map<DataOp<?>, Pointwise<?>> pointwise) {
+            this.pointwise = pointwise;
+        }
+
+        // the roots are consumed once each, such as by the keys of a generator
+        static Fusion of(Collection<DataOp<?>> roots) {
+            Object2IntOpenHashMap<DataOp<?>> consumers = new Object2IntOpenHashMap<>();
+            Set<DataOp<?>> visited = new HashSet<>();
+            Deque<DataOp<?>> queue = new ArrayDeque<>();
+
+            for (DataOp<?> root : roots) {
+                consumers.addTo(root, 1);
+                queue.add(root);
+            }
+
+            while (!queue.isEmpty()) {
+                DataOp<?> op = queue.poll();
+                if (visited.add(op)) {
+                    for (DataOp<?> input : op.inputs) {
+                        consumers.addTo(input, 1);
+                        queue.add(input);
+                    }
+                }
+            }
+
+            Map<DataOp<?>, Pointwise<?>> pointwise = new HashMap<>();
+            for (DataOp<?> op : visited) {
+                if (op.pixels != null) {
+                    resolve(op, consumers, pointwise);
+                }
+            }
+
+            return new Fusion(Collections.unmodifiableMap(pointwise));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Pointwise<T> resolve(DataOp<T> op, Object2IntMap<DataOp<?>> consumers, Map<DataOp<?>, Pointwise<?>> resolved) {
+            Pointwise<T> pointwise = (Pointwise<T>) resolved.get(op);
+            if (pointwise == null) {
+                DataOp<?> input = op.pixels.inputs[0];
+                if (input.pixels != null && consumers.getInt(input) <= 1) {
+                    pointwise = op.pixels.fuse(resolve(input, consumers, resolved));
+                } else {
+                    pointwise = op.pixels.fuse(input.asNode());
+                }
+                resolved.put(op, pointwise);
+            }
+            return pointwise;
+        }
+
+        // ops outside of this graph are not fused, since we cannot know what else consumes them
+        @SuppressWarnings("unchecked")
+        <T> Pointwise<T> get(DataOp<T> op) {
+            Pointwise<T> pointwise = (Pointwise<T>) this.pointwise.get(op);
+            if (pointwise == null) {
+                return op.pixels.fuse(op.pixels.inputs[0].asNode());
+            }
+            return pointwise;
+        }
+    }
+
+    private interface Prepare<T> {
+        Future<?> prepare(DataView view, DataContext ctx, Consumer<Optional<T>> resolve);
+    }
+
+    private interface Inputs {
+        Future<Unit> prepare(DataView view, DataContext ctx);
+    }
+
+    private interface Compute<T> {
+        Optional<T> compute(DataView view, DataContext ctx);
+    }
+
+    private interface Binder<T> {
+        PixelStage<T> bind(DataView view, Object[] inputs);
+    }
+
+    private static final class PixelNode<T> {
+        // the first input is the primary input, which may itself be fused into this stage's pass
+        final DataOp<?>[] inputs;
+        final Binder<T> binder;
+
+        PixelNode(DataOp<?>[] inputs, Binder<T> binder) {
+            this.inputs = inputs;
+            this.binder = binder;
+        }
+
+        // fuses this stage into the pass of its primary input
+        Pointwise<T> fuse(Pointwise<?> source) {
+            int sideCount = this.inputs.length - 1;
+            int sideIndex = source.inputs.length;
+
+            DataOp<?>[] inputs = Arrays.copyOf(source.inputs, sideIndex + sideCount);
+            System.arraycopy(this.inputs, 1, inputs, sideIndex, sideCount);
+
+            return new Pointwise<>(inputs, (view, values) -> {
+                PixelStage<?> stage = source.binder.bind(view, values);
+
+                Object[] stageValues = new Object[sideCount + 1];
+                stageValues[0] = stage.result;
+                System.arraycopy(values, sideIndex, stageValues, 1, sideCount);
+
+                return stage.then(this.binder.bind(view, stageValues));
+            });
+        }
+    }
+
+    private static final class Pointwise<T> {
+        final DataOp<?>[] inputs;
+        final Binder<T> binder;
+
+        Pointwise(DataOp<?>[] inputs, Binder<T> binder) {
+            this.inputs = inputs;
+            this.binder = binder;
+        }
+
+        Future<Unit> prepare(DataView view, DataContext ctx) {
+            Future<Unit> prepared = ctx.prepare(this.inputs[0], view);
+            for (int i = 1; i < this.inputs.length; i++) {
+                prepared = Future.map2(prepared, ctx.prepare(this.inputs[i], view), (a, b) -> Unit.INSTANCE);
+            }
+            return prepared;
+        }
+
+        Optional<T> compute(DataView view, DataContext ctx) {
+            // every input is taken, even if another is absent, so that each of them is released
+            Object[] values = new Object[this.inputs.length];
+            boolean present = true;
+            for (int i = 0; i < values.length; i++) {
+                Optional<?> value = ctx.compute(this.inputs[i], view);
+                present &= value.isPresent();
+                values[i] = value.orElse(null);
+            }
+
+            if (!present) {
+                return Optional.empty();
+            }
+
+            PixelStage<T> stage = this.binder.bind(view, values);
+            RowKernel kernel = stage.kernel;
+
+            int width = view.getWidth();
+            int height = view.getHeight();
+            for (int y = 0; y < height; y++) {
+                int start = y * width;
+                kernel.apply(y, start, start + width);
+            }
+
+            return Optional.of(stage.result);
+        }
+    }
 }
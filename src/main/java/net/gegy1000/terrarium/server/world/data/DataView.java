@@ -93,11 +93,16 @@ public class DataView {
                 && view.getMaxX() <= this.getMaxX() && view.getMaxY() <= this.getMaxY();
     }
 
+    public boolean intersects(DataView view) {
+        return view.getX() < this.getMaxX() && view.getMaxX() > this.x
+                && view.getY() < this.getMaxY() && view.getMaxY() > this.y;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof DataView) {
             DataView dataView = (DataView) obj;
-            return this.x == dataView.x && this.y == dataView.y && this.width == dataView.height && this.height == dataView.height;
+            return this.x == dataView.x && this.y == dataView.y && this.width == dataView.width && this.height == dataView.height;
         }
         return false;
     }
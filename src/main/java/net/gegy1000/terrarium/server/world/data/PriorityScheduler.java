@@ -0,0 +1,72 @@
+package net.gegy1000.terrarium.server.world.data;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.function.IntSupplier;
+
+public final class PriorityScheduler {
+    private final Executor executor;
+
+    private final Object lock = new Object();
+    private PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long sequence;
+
+    public PriorityScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    // lower priorities run first. the executor is only handed generic runners, which pick up whichever queued task
+    // is most urgent at the time that a worker becomes free
+    public void execute(IntSupplier priority, Runnable command) {
+        synchronized (this.lock) {
+            this.queue.add(new Task(priority, this.sequence++, command));
+        }
+        this.executor.execute(this::runNext);
+    }
+
+    private void runNext() {
+        Task task;
+        synchronized (this.lock) {
+            task = this.queue.poll();
+        }
+        if (task != null) {
+            task.command.run();
+        }
+    }
+
+    // priorities are only sampled when a task is queued, so queued tasks need to be reordered when they change
+    public void reprioritize() {
+        synchronized (this.lock) {
+            PriorityQueue<Task> queue = new PriorityQueue<>(Math.max(this.queue.size(), 1));
+            for (Task task : this.queue) {
+                task.priority = task.prioritySupplier.getAsInt();
+                queue.add(task);
+            }
+            this.queue = queue;
+        }
+    }
+
+    private static final class Task implements Comparable<Task> {
+        final IntSupplier prioritySupplier;
+        final long sequence;
+        final Runnable command;
+
+        int priority;
+
+        Task(IntSupplier prioritySupplier, long sequence, Runnable command) {
+            this.prioritySupplier = prioritySupplier;
+            this.sequence = sequence;
+            this.command = command;
+            this.priority = prioritySupplier.getAsInt();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int compare = Integer.compare(this.priority, other.priority);
+            if (compare != 0) {
+                return compare;
+            }
+            return Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.gegy1000.terrarium.server.world.data;
+
+import net.gegy1000.terrarium.Terrarium;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// measures the time that the server thread spends blocked on column data, and attributes it to the keys and tile
+// sources that the blocking work was waiting on, so that we can see which part of the pipeline stalls ticking
+public final class StallWatchdog {
+    public static final StallWatchdog INSTANCE = new StallWatchdog();
+
+    private static final Path REPORT_PATH = Paths.get("mods/terrarium/debug/stalls.txt");
+    private static final long SLOW_STALL_NANOS = 500L * 1000 * 1000;
+
+    private final Map<String, Cause> causes = new HashMap<>();
+    private final Cause stalls = new Cause("total");
+
+    private StallWatchdog() {
+    }
+
+    public static boolean isServerThread() {
+        MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+        return server != null && server.isCallingFromMinecraftThread();
+    }
+
+    // records a stall of the server thread, along with the time spent on each of the causes it was waiting on
+    public synchronized void recordStall(String name, long nanos, Map<String, Long> causeNanos) {
+        this.stalls.record(nanos);
+        for (Map.Entry<String, Long> entry : causeNanos.entrySet()) {
+            Cause cause = this.causes.computeIfAbsent(entry.getKey(), Cause::new);
+            cause.record(entry.getValue());
+        }
+
+        if (nanos >= SLOW_STALL_NANOS) {
+            Terrarium.LOGGER.warn("Server thread stalled for {}ms on {}: {}", nanos / 1000000, name, formatCauses(causeNanos));
+        }
+    }
+
+    // the time recorded against each cause between two snapshots of timings, so that a stall is only attributed the
+    // work that happened while it was blocked
+    public static Map<String, Long> since(Map<String, Long> before, Map<String, Long> after) {
+        if (after.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> delta = new HashMap<>();
+        for (Map.Entry<String, Long> entry : after.entrySet()) {
+            long nanos = entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            if (nanos > 0) {
+                delta.put(entry.getKey(), nanos);
+            }
+        }
+        return delta;
+    }
+
+    public synchronized boolean hasStalls() {
+        return this.stalls.count > 0;
+    }
+
+    public synchronized List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%d stalls, %.1fms total, %.1fms max", this.stalls.count, toMillis(this.stalls.totalNanos), toMillis(this.stalls.maxNanos)));
+
+        List<Cause> ranked = new ArrayList<>(this.causes.values());
+        ranked.sort(Comparator.comparingLong((Cause cause) -> cause.totalNanos).reversed());
+
+        for (Cause cause : ranked) {
+            lines.add(String.format(
+                    "%s: %.1fms total over %d, %.1fms mean, %.1fms max",
+                    cause.name, toMillis(cause.totalNanos), cause.count,
+                    toMillis(cause.totalNanos) / cause.count, toMillis(cause.maxNanos)
+            ));
+        }
+
+        return lines;
+    }
+
+    public Path writeReport() throws IOException {
+        List<String> lines = this.report();
+
+        Files.createDirectories(REPORT_PATH.getParent());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(REPORT_PATH))) {
+            lines.forEach(writer::println);
+        }
+
+        return REPORT_PATH;
+    }
+
+    public synchronized void reset() {
+        this.causes.clear();
+        this.stalls.reset();
+    }
+
+    private static String formatCauses(Map<String, Long> causeNanos) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(causeNanos.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : entries) {
+            if (builder.length() > 0) builder.append(", ");
+            builder.append(entry.getKey()).append(String.format(" (%.1fms)", toMillis(entry.getValue())));
+        }
+        return builder.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static class Cause {
+        final String name;
+        long count;
+        long totalNanos;
+        long maxNanos;
+
+        Cause(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos) {
+            this.count++;
+            this.totalNanos += nanos;
+            this.maxNanos = Math.max(this.maxNanos, nanos);
+        }
+
+        void reset() {
+            this.count = 0;
+            this.totalNanos = 0;
+            this.maxNanos = 0;
+        }
+    }
+}
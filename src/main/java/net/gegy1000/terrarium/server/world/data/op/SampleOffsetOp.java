@@ -13,12 +13,11 @@ public final class SampleOffsetOp {
     }
 
     public <T>DataOp<T> apply(DataOp<T> op) {
-        return DataOp.of((view, executor) -> {
-            DataView offsetView = DataView.rect(
+        return op.resample(view -> {
+            return DataView.rect(
                     view.getX() + this.x, view.getY() + this.z,
                     view.getWidth(), view.getHeight()
             );
-            return op.apply(offsetView, executor);
-        });
+        }, (view, offsetView, source) -> source);
     }
 }
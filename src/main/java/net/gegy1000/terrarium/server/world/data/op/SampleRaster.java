@@ -1,6 +1,8 @@
 package net.gegy1000.terrarium.server.world.data.op;
 
+import net.gegy1000.justnow.future.Future;
 import net.gegy1000.terrarium.server.util.Vec2i;
+import net.gegy1000.terrarium.server.world.data.DataContext;
 import net.gegy1000.terrarium.server.world.data.DataOp;
 import net.gegy1000.terrarium.server.world.data.DataView;
 import net.gegy1000.terrarium.server.world.data.raster.ByteRaster;
@@ -10,14 +12,18 @@ import net.gegy1000.terrarium.server.world.data.raster.Raster;
 import net.gegy1000.terrarium.server.world.data.raster.ShortRaster;
 import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
 import net.gegy1000.terrarium.server.world.data.source.DataSourceReader;
-import net.gegy1000.terrarium.server.world.data.source.DataTileResult;
 import net.gegy1000.terrarium.server.world.data.source.TiledDataSource;
 import net.minecraft.util.math.MathHelper;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.function.Function;
 
 public final class SampleRaster {
+    // views covering no more than this fraction of a tile read only their window of it
+    private static final int WINDOW_FRACTION = 16;
+
     public static DataOp<ShortRaster> sampleShort(TiledDataSource<ShortRaster> source) {
         return sample(source, ShortRaster::create);
     }
@@ -39,29 +45,34 @@ public final class SampleRaster {
     }
 
     public static <T extends Raster<?>> DataOp<T> sample(TiledDataSource<T> source, Function<DataView, T> function) {
-        return DataOp.of((view, executor) -> {
+        return DataOp.of((view, ctx) -> {
             int tileWidth = MathHelper.floor(source.getTileWidth());
             int tileHeight = MathHelper.floor(source.getTileHeight());
 
-            return DataSourceReader.INSTANCE.getTiles(source, view).andThen(tiles -> {
-                return executor.spawnBlocking(() -> {
-                    for (DataTileResult<T> tileResult : tiles) {
-                        if (!tileResult.data.isPresent()) {
+            int minTileX = MathHelper.floor((double) view.getX() / tileWidth);
+            int minTileY = MathHelper.floor((double) view.getY() / tileHeight);
+            int maxTileX = MathHelper.floor((double) view.getMaxX() / tileWidth);
+            int maxTileY = MathHelper.floor((double) view.getMaxY() / tileHeight);
+
+            Collection<Future<Piece<T>>> pieces = new ArrayList<>();
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                    DataView tileView = DataView.rect(tileX * tileWidth, tileY * tileHeight, tileWidth, tileHeight);
+                    pieces.add(loadPiece(source, new Vec2i(tileX, tileY), tileView, view, ctx));
+                }
+            }
+
+            return Future.joinAll(pieces.stream()).andThen(loaded -> {
+                return ctx.spawnBlocking(() -> {
+                    for (Piece<T> piece : loaded) {
+                        if (!piece.data.isPresent()) {
                             return Optional.empty();
                         }
                     }
 
                     T resultRaster = function.apply(view);
-
-                    for (DataTileResult<T> tileResult : tiles) {
-                        T sourceRaster = tileResult.data.get();
-                        Vec2i tilePos = tileResult.pos;
-
-                        DataView sourceView = DataView.rect(
-                                tilePos.x * tileWidth, tilePos.y * tileHeight,
-                                tileWidth, tileHeight
-                        );
-                        Raster.rasterCopy(sourceRaster, sourceView, resultRaster, view);
+                    for (Piece<T> piece : loaded) {
+                        Raster.rasterCopy(piece.data.get(), piece.view, resultRaster, view);
                     }
 
                     return Optional.of(resultRaster);
@@ -69,4 +80,35 @@ public final class SampleRaster {
             });
         });
     }
+
+    // a view over only a small part of a tile reads just that window of it, unless the whole tile is loaded already
+    private static <T extends Raster<?>> Future<Piece<T>> loadPiece(TiledDataSource<T> source, Vec2i tilePos, DataView tileView, DataView view, DataContext ctx) {
+        DataView window = DataView.fromCorners(
+                Math.max(view.getMinX(), tileView.getMinX()), Math.max(view.getMinY(), tileView.getMinY()),
+                Math.min(view.getMaxX(), tileView.getMaxX()), Math.min(view.getMaxY(), tileView.getMaxY())
+        );
+
+        long windowArea = (long) window.getWidth() * window.getHeight();
+        long tileArea = (long) tileView.getWidth() * tileView.getHeight();
+        boolean smallWindow = window.getWidth() > 0 && window.getHeight() > 0 && windowArea * WINDOW_FRACTION <= tileArea;
+
+        if (smallWindow && source.canLoadWindows() && !DataSourceReader.INSTANCE.isTileLoaded(source, tilePos)) {
+            DataView localWindow = window.offset(-tileView.getX(), -tileView.getY());
+            return DataSourceReader.INSTANCE.getTileWindow(source, tilePos, localWindow, ctx)
+                    .map(data -> new Piece<>(window, data));
+        }
+
+        return DataSourceReader.INSTANCE.getTile(source, tilePos, ctx)
+                .map(tile -> new Piece<>(tileView, tile.data));
+    }
+
+    private static final class Piece<T> {
+        final DataView view;
+        final Optional<T> data;
+
+        Piece(DataView view, Optional<T> data) {
+            this.view = view;
+            this.data = data;
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package net.gegy1000.terrarium.server.world.data.op;
 
 import net.gegy1000.terrarium.server.world.data.DataOp;
-import net.gegy1000.terrarium.server.world.data.DataView;
 import net.gegy1000.terrarium.server.world.data.raster.FloatRaster;
 import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
 import net.minecraft.util.math.MathHelper;
@@ -20,21 +19,15 @@ public final class SlopeOp {
     }
 
     public static DataOp<UByteRaster> from(DataOp<FloatRaster> heights, float heightScale) {
-        return DataOp.of((view, executor) -> {
-            DataView sourceView = view.grow(1);
-            return heights.apply(sourceView, executor)
-                    .andThen(opt -> executor.spawnBlocking(() -> {
-                        return opt.map(source -> {
-                            UByteRaster result = UByteRaster.create(view);
-                            for (int localY = 0; localY < view.getHeight(); localY++) {
-                                for (int localX = 0; localX < view.getWidth(); localX++) {
-                                    int slope = computeSlope(source, localX + 1, localY + 1, heightScale);
-                                    result.set(localX, localY, slope);
-                                }
-                            }
-                            return result;
-                        });
-                    }));
+        return heights.resample(view -> view.grow(1), (view, sourceView, source) -> {
+            UByteRaster result = UByteRaster.create(view);
+            for (int localY = 0; localY < view.getHeight(); localY++) {
+                for (int localX = 0; localX < view.getWidth(); localX++) {
+                    int slope = computeSlope(source, localX + 1, localY + 1, heightScale);
+                    result.set(localX, localY, slope);
+                }
+            }
+            return result;
         });
     }
 
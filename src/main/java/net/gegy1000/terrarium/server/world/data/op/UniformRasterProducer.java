@@ -29,7 +29,7 @@ public class UniformRasterProducer {
     public static DataOp<ShortRaster> ofShorts(short value) {
         return DataOp.ofBlocking(view -> {
             ShortRaster result = ShortRaster.create(view);
-            Arrays.fill(result.getData(), value);
+            Arrays.fill(result.getDataForWrite(), value);
             return result;
         });
     }
@@ -12,9 +12,7 @@ public final class VoronoiScaleOp {
     public static <T extends Enum<T>> DataOp<EnumRaster<T>> scaleEnumsFrom(DataOp<EnumRaster<T>> data, CoordinateReference src, T defaultValue) {
         Voronoi voronoi = new Voronoi(Voronoi.DistanceFunc.EUCLIDEAN, 0.9, 1000);
 
-        return DataOp.of((view, executor) -> {
-            DataView srcView = getSourceView(view, src);
-
+        return data.resample(view -> getSourceView(view, src), (view, srcView, source) -> {
             double dstToSrcX = 1.0 / src.scaleX();
             double dstToSrcY = 1.0 / src.scaleZ();
 
@@ -26,15 +24,9 @@ public final class VoronoiScaleOp {
             double offsetX = minCoordinate.getX() - srcView.getX();
             double offsetY = minCoordinate.getZ() - srcView.getY();
 
-            return data.apply(srcView, executor).andThen(opt -> {
-                return executor.spawnBlocking(() -> {
-                    return opt.map(source -> {
-                        EnumRaster<T> result = EnumRaster.create(defaultValue, view);
-                        voronoi.scaleBytes(source.getData(), result.getData(), srcView, view, dstToSrcX, dstToSrcY, offsetX, offsetY);
-                        return result;
-                    });
-                });
-            });
+            EnumRaster<T> result = EnumRaster.create(defaultValue, view);
+            voronoi.scaleBytes(source.getData(), result.getDataForWrite(), srcView, view, dstToSrcX, dstToSrcY, offsetX, offsetY);
+            return result;
         });
     }
 
@@ -7,18 +7,28 @@ import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
 import net.minecraft.util.math.ChunkPos;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class AbstractRaster<T> implements Raster<T> {
-    protected final T data;
+    protected T data;
     protected final int width;
     protected final int height;
 
+    // shared between all handles referencing the same data: null when this handle owns its data exclusively
+    private volatile AtomicInteger owners;
+
+    // set once this handle is known to own its data, so that every later write can skip checking the owners: handles
+    // are only written to from one thread at a time
+    private boolean exclusive;
+
     protected AbstractRaster(T data, int width, int height) {
         this.data = data;
         this.width = width;
         this.height = height;
+        this.exclusive = true;
     }
 
     @Override
@@ -26,6 +36,80 @@ public abstract class AbstractRaster<T> implements Raster<T> {
         return this.data;
     }
 
+    @Override
+    public final T getDataForWrite() {
+        this.prepareWrite();
+        return this.data;
+    }
+
+    // the approximate memory held by this raster's data, not counting any objects it references
+    public final long getByteSize() {
+        Object data = this.data;
+        if (data instanceof byte[]) {
+            return ((byte[]) data).length;
+        } else if (data instanceof short[]) {
+            return (long) ((short[]) data).length * Short.BYTES;
+        } else if (data instanceof char[]) {
+            return (long) ((char[]) data).length * Character.BYTES;
+        } else if (data instanceof float[]) {
+            return (long) ((float[]) data).length * Float.BYTES;
+        } else if (data instanceof Object[]) {
+            return (long) ((Object[]) data).length * Integer.BYTES;
+        }
+        return 0;
+    }
+
+    // copies this raster's data out of the java heap, or returns null if its data cannot be stored there
+    @Nullable
+    public OffHeapRaster<T> offHeap() {
+        return null;
+    }
+
+    public abstract AbstractRaster<T> share();
+
+    protected abstract T copyData(T data);
+
+    protected final <R extends AbstractRaster<T>> R shareInto(R handle) {
+        synchronized (this) {
+            AtomicInteger owners = this.owners;
+            if (owners == null) {
+                this.owners = owners = new AtomicInteger(1);
+            }
+            owners.incrementAndGet();
+            this.exclusive = false;
+
+            AbstractRaster<T> shared = handle;
+            shared.owners = owners;
+            shared.exclusive = false;
+        }
+        return handle;
+    }
+
+    public final void release() {
+        AtomicInteger owners = this.owners;
+        if (owners != null) {
+            owners.decrementAndGet();
+            this.owners = null;
+        }
+    }
+
+    protected final void prepareWrite() {
+        if (this.exclusive) {
+            return;
+        }
+
+        AtomicInteger owners = this.owners;
+        if (owners != null) {
+            // only copy if another handle may still read this data
+            if (owners.get() > 1) {
+                this.data = this.copyData(this.data);
+                owners.decrementAndGet();
+            }
+            this.owners = null;
+        }
+        this.exclusive = true;
+    }
+
     @Override
     public final int getWidth() {
         return this.width;
@@ -46,8 +130,7 @@ public abstract class AbstractRaster<T> implements Raster<T> {
 
         for (int chunkY = chunkMinY; chunkY <= chunkMaxY; chunkY++) {
             for (int chunkX = chunkMinX; chunkX <= chunkMaxX; chunkX++) {
-                ChunkPos columnPos = new ChunkPos(chunkX, chunkY);
-                columnHandles.add(dataCache.acquireEntry(columnPos));
+                columnHandles.add(dataCache.acquireEntry(chunkX, chunkY));
             }
         }
 
@@ -1,5 +1,6 @@
 package net.gegy1000.terrarium.server.world.data.raster;
 
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
@@ -41,12 +42,14 @@ public final class BitRaster extends AbstractRaster<char[]> {
     }
 
     public void put(int x, int y) {
+        this.prepareWrite();
         int index = this.index(x, y);
         int bitIndex = index & BIT_MASK;
         this.data[wordIndex(index)] |= (1 << bitIndex);
     }
 
     public void remove(int x, int y) {
+        this.prepareWrite();
         int index = this.index(x, y);
         int bitIndex = index & BIT_MASK;
         this.data[wordIndex(index)] &= ~(1 << bitIndex);
@@ -60,6 +63,7 @@ public final class BitRaster extends AbstractRaster<char[]> {
     }
 
     public void transform(Transformer transformer) {
+        this.prepareWrite();
         for (int y = 0; y < this.height; y++) {
             for (int x = 0; x < this.width; x++) {
                 boolean source = this.get(x, y);
@@ -81,6 +85,23 @@ public final class BitRaster extends AbstractRaster<char[]> {
         return new BitRaster(Arrays.copyOf(this.data, this.data.length), this.width, this.height);
     }
 
+    @Override
+    public OffHeapRaster<char[]> offHeap() {
+        int width = this.width;
+        int height = this.height;
+        return OffHeapRaster.ofChars(this.data, data -> new BitRaster(data, width, height));
+    }
+
+    @Override
+    public BitRaster share() {
+        return this.shareInto(new BitRaster(this.data, this.width, this.height));
+    }
+
+    @Override
+    protected char[] copyData(char[] data) {
+        return Arrays.copyOf(data, data.length);
+    }
+
     public interface Transformer {
         boolean apply(boolean source, int x, int y);
     }
@@ -116,6 +137,16 @@ public final class BitRaster extends AbstractRaster<char[]> {
             return this.defaultValue;
         }
 
+        public boolean sample(ColumnData data, int x, int z) {
+            Optional<BitRaster> optional = data.get(this.key);
+            if (optional.isPresent()) {
+                DataView view = data.getView();
+                BitRaster raster = optional.get();
+                return raster.get(x - view.getX(), z - view.getY());
+            }
+            return this.defaultValue;
+        }
+
         @Override
         public BitRaster sample(ColumnDataCache dataCache, DataView view) {
             BitRaster raster = BitRaster.create(view);
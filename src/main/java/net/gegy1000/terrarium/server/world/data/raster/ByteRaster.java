@@ -1,6 +1,7 @@
 package net.gegy1000.terrarium.server.world.data.raster;
 
 import com.google.common.base.Preconditions;
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
@@ -34,6 +35,7 @@ public final class ByteRaster extends AbstractRaster<byte[]> implements IntegerR
     }
 
     public void set(int x, int y, byte value) {
+        this.prepareWrite();
         this.data[this.index(x, y)] = value;
     }
 
@@ -42,6 +44,7 @@ public final class ByteRaster extends AbstractRaster<byte[]> implements IntegerR
     }
 
     public void fill(byte value) {
+        this.prepareWrite();
         Arrays.fill(this.data, value);
     }
 
@@ -50,6 +53,7 @@ public final class ByteRaster extends AbstractRaster<byte[]> implements IntegerR
     }
 
     public void transform(Transformer transformer) {
+        this.prepareWrite();
         for (int y = 0; y < this.height; y++) {
             for (int x = 0; x < this.width; x++) {
                 int index = this.index(x, y);
@@ -91,6 +95,23 @@ public final class ByteRaster extends AbstractRaster<byte[]> implements IntegerR
         return new ByteRaster(Arrays.copyOf(this.data, this.data.length), this.width, this.height);
     }
 
+    @Override
+    public OffHeapRaster<byte[]> offHeap() {
+        int width = this.width;
+        int height = this.height;
+        return OffHeapRaster.ofBytes(this.data, data -> new ByteRaster(data, width, height));
+    }
+
+    @Override
+    public ByteRaster share() {
+        return this.shareInto(new ByteRaster(this.data, this.width, this.height));
+    }
+
+    @Override
+    protected byte[] copyData(byte[] data) {
+        return Arrays.copyOf(data, data.length);
+    }
+
     public interface Transformer {
         byte apply(byte source, int x, int y);
     }
@@ -122,6 +143,16 @@ public final class ByteRaster extends AbstractRaster<byte[]> implements IntegerR
             return this.defaultValue;
         }
 
+        public byte sample(ColumnData data, int x, int z) {
+            Optional<ByteRaster> optional = data.get(this.key);
+            if (optional.isPresent()) {
+                DataView view = data.getView();
+                ByteRaster raster = optional.get();
+                return raster.get(x - view.getX(), z - view.getY());
+            }
+            return this.defaultValue;
+        }
+
         @Override
         public ByteRaster sample(ColumnDataCache dataCache, DataView view) {
             ByteRaster raster = ByteRaster.create(view);
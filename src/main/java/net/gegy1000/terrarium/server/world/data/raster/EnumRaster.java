@@ -1,5 +1,6 @@
 package net.gegy1000.terrarium.server.world.data.raster;
 
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
@@ -43,6 +44,7 @@ public final class EnumRaster<T extends Enum<T>> extends AbstractRaster<byte[]>
     }
 
     public void set(int x, int y, T variant) {
+        this.prepareWrite();
         this.data[this.index(x, y)] = (byte) variant.ordinal();
     }
 
@@ -50,7 +52,12 @@ public final class EnumRaster<T extends Enum<T>> extends AbstractRaster<byte[]>
         return this.universe[this.data[this.index(x, y)] & 0xFF];
     }
 
+    public T get(int index) {
+        return this.universe[this.data[index] & 0xFF];
+    }
+
     public void transform(Transformer<T> transformer) {
+        this.prepareWrite();
         for (int y = 0; y < this.height; y++) {
             for (int x = 0; x < this.width; x++) {
                 int index = this.index(x, y);
@@ -73,6 +80,24 @@ public final class EnumRaster<T extends Enum<T>> extends AbstractRaster<byte[]>
         return new EnumRaster<>(Arrays.copyOf(this.data, this.data.length), this.width, this.height, this.type);
     }
 
+    @Override
+    public OffHeapRaster<byte[]> offHeap() {
+        int width = this.width;
+        int height = this.height;
+        Class<T> type = this.type;
+        return OffHeapRaster.ofBytes(this.data, data -> new EnumRaster<>(data, width, height, type));
+    }
+
+    @Override
+    public EnumRaster<T> share() {
+        return this.shareInto(new EnumRaster<>(this.data, this.width, this.height, this.type));
+    }
+
+    @Override
+    protected byte[] copyData(byte[] data) {
+        return Arrays.copyOf(data, data.length);
+    }
+
     public interface Transformer<T extends Enum<T>> {
         T apply(T source, int x, int y);
     }
@@ -100,6 +125,16 @@ public final class EnumRaster<T extends Enum<T>> extends AbstractRaster<byte[]>
             return this.defaultVariant;
         }
 
+        public T sample(ColumnData data, int x, int z) {
+            Optional<EnumRaster<T>> optional = data.get(this.key);
+            if (optional.isPresent()) {
+                DataView view = data.getView();
+                EnumRaster<T> raster = optional.get();
+                return raster.get(x - view.getX(), z - view.getY());
+            }
+            return this.defaultVariant;
+        }
+
         @Override
         public EnumRaster<T> sample(ColumnDataCache dataCache, DataView view) {
             EnumRaster<T> raster = EnumRaster.create(this.defaultVariant, view);
@@ -1,5 +1,6 @@
 package net.gegy1000.terrarium.server.world.data.raster;
 
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
@@ -28,11 +29,21 @@ public final class FloatRaster extends AbstractRaster<float[]> implements Number
         return raster;
     }
 
+    public static FloatRaster copyFrom(ShortRaster from) {
+        short[] src = from.getData();
+        float[] dst = new float[src.length];
+        for (int i = 0; i < src.length; i++) {
+            dst[i] = src[i];
+        }
+        return new FloatRaster(dst, from.getWidth(), from.getHeight());
+    }
+
     public static Sampler sampler(DataKey<FloatRaster> key) {
         return new Sampler(key);
     }
 
     public void set(int x, int y, float value) {
+        this.prepareWrite();
         this.data[this.index(x, y)] = value;
     }
 
@@ -41,6 +52,7 @@ public final class FloatRaster extends AbstractRaster<float[]> implements Number
     }
 
     public void transform(Transformer transformer) {
+        this.prepareWrite();
         for (int y = 0; y < this.height; y++) {
             for (int x = 0; x < this.width; x++) {
                 int index = this.index(x, y);
@@ -71,6 +83,23 @@ public final class FloatRaster extends AbstractRaster<float[]> implements Number
         return new FloatRaster(Arrays.copyOf(this.data, this.data.length), this.width, this.height);
     }
 
+    @Override
+    public OffHeapRaster<float[]> offHeap() {
+        int width = this.width;
+        int height = this.height;
+        return OffHeapRaster.ofFloats(this.data, data -> new FloatRaster(data, width, height));
+    }
+
+    @Override
+    public FloatRaster share() {
+        return this.shareInto(new FloatRaster(this.data, this.width, this.height));
+    }
+
+    @Override
+    protected float[] copyData(float[] data) {
+        return Arrays.copyOf(data, data.length);
+    }
+
     public interface Transformer {
         float apply(float source, int x, int y);
     }
@@ -102,6 +131,16 @@ public final class FloatRaster extends AbstractRaster<float[]> implements Number
             return this.defaultValue;
         }
 
+        public float sample(ColumnData data, int x, int z) {
+            Optional<FloatRaster> optional = data.get(this.key);
+            if (optional.isPresent()) {
+                DataView view = data.getView();
+                FloatRaster raster = optional.get();
+                return raster.get(x - view.getX(), z - view.getY());
+            }
+            return this.defaultValue;
+        }
+
         @Override
         public FloatRaster sample(ColumnDataCache dataCache, DataView view) {
             FloatRaster raster = FloatRaster.create(view);
@@ -1,5 +1,6 @@
 package net.gegy1000.terrarium.server.world.data.raster;
 
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
@@ -33,6 +34,7 @@ public final class ObjRaster<T> extends AbstractRaster<T[]> {
     }
 
     public void set(int x, int y, T value) {
+        this.prepareWrite();
         this.data[this.index(x, y)] = value;
     }
 
@@ -41,6 +43,7 @@ public final class ObjRaster<T> extends AbstractRaster<T[]> {
     }
 
     public void transform(Transformer<T> transformer) {
+        this.prepareWrite();
         for (int y = 0; y < this.height; y++) {
             for (int x = 0; x < this.width; x++) {
                 int index = this.index(x, y);
@@ -61,6 +64,16 @@ public final class ObjRaster<T> extends AbstractRaster<T[]> {
         return new ObjRaster<>(Arrays.copyOf(this.data, this.data.length), this.width, this.height);
     }
 
+    @Override
+    public ObjRaster<T> share() {
+        return this.shareInto(new ObjRaster<>(this.data, this.width, this.height));
+    }
+
+    @Override
+    protected T[] copyData(T[] data) {
+        return Arrays.copyOf(data, data.length);
+    }
+
     public interface Transformer<T> {
         T apply(T source, int x, int y);
     }
@@ -88,6 +101,16 @@ public final class ObjRaster<T> extends AbstractRaster<T[]> {
             return this.defaultValue;
         }
 
+        public T sample(ColumnData data, int x, int z) {
+            Optional<ObjRaster<T>> optional = data.get(this.key);
+            if (optional.isPresent()) {
+                DataView view = data.getView();
+                ObjRaster<T> raster = optional.get();
+                return raster.get(x - view.getX(), z - view.getY());
+            }
+            return this.defaultValue;
+        }
+
         @Override
         public ObjRaster<T> sample(ColumnDataCache dataCache, DataView view) {
             ObjRaster<T> raster = ObjRaster.create(this.defaultValue, view);
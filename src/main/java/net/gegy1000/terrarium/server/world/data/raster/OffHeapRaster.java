@@ -0,0 +1,71 @@
+package net.gegy1000.terrarium.server.world.data.raster;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+// a copy of a raster's data held in a direct buffer outside of the java heap, which can be restored into a new raster
+public final class OffHeapRaster<T> {
+    private final ByteBuffer buffer;
+    private final Function<ByteBuffer, AbstractRaster<T>> restore;
+
+    private OffHeapRaster(ByteBuffer buffer, Function<ByteBuffer, AbstractRaster<T>> restore) {
+        this.buffer = buffer;
+        this.restore = restore;
+    }
+
+    static OffHeapRaster<byte[]> ofBytes(byte[] data, Function<byte[], AbstractRaster<byte[]>> create) {
+        // only the length is captured: the restore function must not hold onto the heap array
+        int length = data.length;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        buffer.put(data);
+        return new OffHeapRaster<>(buffer, b -> {
+            byte[] restored = new byte[length];
+            b.get(restored);
+            return create.apply(restored);
+        });
+    }
+
+    static OffHeapRaster<short[]> ofShorts(short[] data, Function<short[], AbstractRaster<short[]>> create) {
+        int length = data.length;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length * Short.BYTES);
+        buffer.asShortBuffer().put(data);
+        return new OffHeapRaster<>(buffer, b -> {
+            short[] restored = new short[length];
+            b.asShortBuffer().get(restored);
+            return create.apply(restored);
+        });
+    }
+
+    static OffHeapRaster<char[]> ofChars(char[] data, Function<char[], AbstractRaster<char[]>> create) {
+        int length = data.length;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length * Character.BYTES);
+        buffer.asCharBuffer().put(data);
+        return new OffHeapRaster<>(buffer, b -> {
+            char[] restored = new char[length];
+            b.asCharBuffer().get(restored);
+            return create.apply(restored);
+        });
+    }
+
+    static OffHeapRaster<float[]> ofFloats(float[] data, Function<float[], AbstractRaster<float[]>> create) {
+        int length = data.length;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length * Float.BYTES);
+        buffer.asFloatBuffer().put(data);
+        return new OffHeapRaster<>(buffer, b -> {
+            float[] restored = new float[length];
+            b.asFloatBuffer().get(restored);
+            return create.apply(restored);
+        });
+    }
+
+    public AbstractRaster<T> restore() {
+        // a duplicate has its own position, so concurrent restores do not interfere
+        ByteBuffer buffer = this.buffer.duplicate();
+        buffer.clear();
+        return this.restore.apply(buffer);
+    }
+
+    public long getByteSize() {
+        return this.buffer.capacity();
+    }
+}
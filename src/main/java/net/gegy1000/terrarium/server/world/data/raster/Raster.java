@@ -12,6 +12,9 @@ public interface Raster<T> {
 
     T getData();
 
+    // the data of this raster, copied first if it may be shared with any other handle, so that it can be written to
+    T getDataForWrite();
+
     default int index(int x, int y) {
         return x + y * this.getWidth();
     }
@@ -28,7 +31,7 @@ public interface Raster<T> {
         int maxY = Math.min(srcView.getHeight(), destView.getMaxY() - srcView.getMinY());
 
         Object srcData = src.getData();
-        Object destData = dest.getData();
+        Object destData = dest.getDataForWrite();
 
         for (int localY = minY; localY < maxY; localY++) {
             int resultY = (localY + srcView.getMinY()) - destView.getMinY();
@@ -46,7 +49,7 @@ public interface Raster<T> {
     @SuppressWarnings({ "SuspiciousSystemArraycopy" })
     static <R extends Raster<?>> void rasterCopy(R src, R dest) {
         int length = src.getWidth() * src.getHeight();
-        System.arraycopy(src.getData(), 0, dest.getData(), 0, length);
+        System.arraycopy(src.getData(), 0, dest.getDataForWrite(), 0, length);
     }
 
     interface Sampler<T> extends BiFunction<ColumnDataCache, DataView, T> {
@@ -1,6 +1,7 @@
 package net.gegy1000.terrarium.server.world.data.raster;
 
 import com.google.common.base.Preconditions;
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
@@ -43,6 +44,7 @@ public final class ShortRaster extends AbstractRaster<short[]> implements Intege
     }
 
     public void set(int x, int y, short value) {
+        this.prepareWrite();
         this.data[this.index(x, y)] = value;
     }
 
@@ -51,6 +53,7 @@ public final class ShortRaster extends AbstractRaster<short[]> implements Intege
     }
 
     public void transform(Transformer transformer) {
+        this.prepareWrite();
         for (int y = 0; y < this.height; y++) {
             for (int x = 0; x < this.width; x++) {
                 int index = this.index(x, y);
@@ -91,6 +94,23 @@ public final class ShortRaster extends AbstractRaster<short[]> implements Intege
         return new ShortRaster(Arrays.copyOf(this.data, this.data.length), this.width, this.height);
     }
 
+    @Override
+    public OffHeapRaster<short[]> offHeap() {
+        int width = this.width;
+        int height = this.height;
+        return OffHeapRaster.ofShorts(this.data, data -> new ShortRaster(data, width, height));
+    }
+
+    @Override
+    public ShortRaster share() {
+        return this.shareInto(new ShortRaster(this.data, this.width, this.height));
+    }
+
+    @Override
+    protected short[] copyData(short[] data) {
+        return Arrays.copyOf(data, data.length);
+    }
+
     public interface Transformer {
         short apply(short source, int x, int y);
     }
@@ -122,6 +142,16 @@ public final class ShortRaster extends AbstractRaster<short[]> implements Intege
             return this.defaultValue;
         }
 
+        public short sample(ColumnData data, int x, int z) {
+            Optional<ShortRaster> optional = data.get(this.key);
+            if (optional.isPresent()) {
+                DataView view = data.getView();
+                ShortRaster raster = optional.get();
+                return raster.get(x - view.getX(), z - view.getY());
+            }
+            return this.defaultValue;
+        }
+
         @Override
         public ShortRaster sample(ColumnDataCache dataCache, DataView view) {
             ShortRaster raster = ShortRaster.create(view);
@@ -1,6 +1,7 @@
 package net.gegy1000.terrarium.server.world.data.raster;
 
 import com.google.common.base.Preconditions;
+import net.gegy1000.terrarium.server.world.data.ColumnData;
 import net.gegy1000.terrarium.server.world.data.ColumnDataCache;
 import net.gegy1000.terrarium.server.world.data.DataKey;
 import net.gegy1000.terrarium.server.world.data.DataView;
@@ -46,10 +47,12 @@ public final class UByteRaster extends AbstractRaster<byte[]> implements Integer
     }
 
     public void fill(int value) {
+        this.prepareWrite();
         Arrays.fill(this.data, (byte) (value & 0xFF));
     }
 
     public void set(int x, int y, int value) {
+        this.prepareWrite();
         this.data[this.index(x, y)] = (byte) (value & 0xFF);
     }
 
@@ -58,6 +61,7 @@ public final class UByteRaster extends AbstractRaster<byte[]> implements Integer
     }
 
     public void transform(Transformer transformer) {
+        this.prepareWrite();
         for (int y = 0; y < this.height; y++) {
             for (int x = 0; x < this.width; x++) {
                 int index = this.index(x, y);
@@ -101,6 +105,23 @@ public final class UByteRaster extends AbstractRaster<byte[]> implements Integer
         return new UByteRaster(Arrays.copyOf(this.data, this.data.length), this.width, this.height);
     }
 
+    @Override
+    public OffHeapRaster<byte[]> offHeap() {
+        int width = this.width;
+        int height = this.height;
+        return OffHeapRaster.ofBytes(this.data, data -> new UByteRaster(data, width, height));
+    }
+
+    @Override
+    public UByteRaster share() {
+        return this.shareInto(new UByteRaster(this.data, this.width, this.height));
+    }
+
+    @Override
+    protected byte[] copyData(byte[] data) {
+        return Arrays.copyOf(data, data.length);
+    }
+
     public interface Transformer {
         int apply(int source, int x, int y);
     }
@@ -132,6 +153,16 @@ public final class UByteRaster extends AbstractRaster<byte[]> implements Integer
             return this.defaultValue;
         }
 
+        public int sample(ColumnData data, int x, int z) {
+            Optional<UByteRaster> optional = data.get(this.key);
+            if (optional.isPresent()) {
+                DataView view = data.getView();
+                UByteRaster raster = optional.get();
+                return raster.get(x - view.getX(), z - view.getY());
+            }
+            return this.defaultValue;
+        }
+
         @Override
         public UByteRaster sample(ColumnDataCache dataCache, DataView view) {
             UByteRaster raster = UByteRaster.create(view);
@@ -1,7 +1,5 @@
 package net.gegy1000.terrarium.server.world.data.source;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.gegy1000.justnow.Waker;
 import net.gegy1000.justnow.future.Future;
@@ -9,34 +7,42 @@ import net.gegy1000.justnow.future.JoinHandle;
 import net.gegy1000.justnow.tuple.Unit;
 import net.gegy1000.terrarium.Terrarium;
 import net.gegy1000.terrarium.server.util.Vec2i;
+import net.gegy1000.terrarium.server.world.data.DataContext;
 import net.gegy1000.terrarium.server.world.data.DataView;
+import net.gegy1000.terrarium.server.world.data.PriorityScheduler;
 import net.minecraft.util.math.MathHelper;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 
 public final class DataSourceReader {
     public static final DataSourceReader INSTANCE = new DataSourceReader();
 
-    private final ExecutorService loadService = Executors.newFixedThreadPool(3, new ThreadFactoryBuilder().setNameFormat("terrarium-data-loader-%s").setDaemon(true).build());
+    static final int LOAD_THREADS = 3;
 
-    private final Cache<TileKey<?>, DataTileResult<?>> tileCache = CacheBuilder.newBuilder()
-            .maximumSize(128)
-            .expireAfterAccess(60, TimeUnit.SECONDS)
-            .build();
+    private final ExecutorService loadService = Executors.newFixedThreadPool(LOAD_THREADS, new ThreadFactoryBuilder().setNameFormat("terrarium-data-loader-%s").setDaemon(true).build());
+    private final PriorityScheduler loadScheduler = new PriorityScheduler(this.loadService);
 
-    private final Map<TileKey<?>, JoinHandle<DataTileResult<?>>> queuedTiles = new HashMap<>();
+    private final ScheduledExecutorService retryService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("terrarium-data-retry").setDaemon(true).build());
 
-    private final LinkedBlockingDeque<Waker> queueEmpty = new LinkedBlockingDeque<>();
+    private final LoadedTileCache tileCache = new LoadedTileCache();
+
+    private final Map<TileKey<?>, QueuedTile> queuedTiles = new ConcurrentHashMap<>();
 
-    private final Object lock = new Object();
+    private final LinkedBlockingDeque<Waker> queueEmpty = new LinkedBlockingDeque<>();
 
     private DataSourceReader() {
     }
@@ -61,52 +67,164 @@ public final class DataSourceReader {
 
     public void clear() {
         this.cancelLoading();
-        this.tileCache.invalidateAll();
+        this.tileCache.clear();
     }
 
     public void cancelLoading() {
-        for (JoinHandle<?> handle : this.queuedTiles.values()) {
-            handle.cancel();
+        for (Map.Entry<TileKey<?>, QueuedTile> entry : this.queuedTiles.entrySet()) {
+            QueuedTile queued = entry.getValue();
+            synchronized (queued) {
+                queued.released = true;
+                this.queuedTiles.remove(entry.getKey(), queued);
+                queued.cancel();
+            }
         }
-        this.queuedTiles.clear();
         this.notifyQueueEmpty();
     }
 
-    private <T> JoinHandle<DataTileResult<?>> enqueueTile(TileKey<T> key) {
-        return Future.spawnBlocking(this.loadService, () -> {
+    private <T> void spawnLoad(TileKey<T> key, QueuedTile queued) {
+        queued.load = new RetryingLoad<>(queued::getPriority, () -> {
+            // every context waiting on this tile was cancelled before we got to it
+            if (queued.cancelled) {
+                return DataTileResult.empty(key.asVec2());
+            }
+
             try {
+                long start = System.nanoTime();
                 DataTileResult<T> tile = this.loadTile(key);
-                this.handleResult(key, tile);
+
+                String cause = "tile " + key.source.getClass().getSimpleName();
+                long time = System.nanoTime() - start;
+                queued.contexts.forEach(ctx -> ctx.recordTime(cause, time));
+
+                this.handleResult(key, queued, tile);
                 return tile;
+            } catch (HostBackoffException e) {
+                throw e;
             } catch (Throwable t) {
                 this.logError(key, t);
+                queued.contexts.forEach(DataContext::markFailed);
                 return DataTileResult.empty(key.asVec2());
             }
         });
+        queued.load.spawn();
+    }
+
+    public void reprioritize() {
+        this.loadScheduler.reprioritize();
+    }
+
+    public String getCacheStats() {
+        return this.tileCache.getStats();
+    }
+
+    private void releaseTile(TileKey<?> key, QueuedTile queued, DataContext ctx) {
+        synchronized (queued) {
+            queued.contexts.remove(ctx);
+            if (--queued.references > 0 || queued.released) {
+                return;
+            }
+            queued.released = true;
+            this.queuedTiles.remove(key, queued);
+            queued.cancel();
+        }
+        if (this.queuedTiles.isEmpty()) {
+            this.notifyQueueEmpty();
+        }
     }
 
     @SuppressWarnings("unchecked")
-    public <T> Future<DataTileResult<T>> getTile(TiledDataSource<T> source, Vec2i pos) {
+    public <T> Future<DataTileResult<T>> getTile(TiledDataSource<T> source, Vec2i pos, DataContext ctx) {
         TileKey<T> key = new TileKey<>(source, pos.x, pos.y);
         try {
-            DataTileResult<T> result = (DataTileResult<T>) this.tileCache.getIfPresent(key);
-            if (result != null) {
-                return Future.ready(result);
+            QueuedTile queued;
+            while (true) {
+                DataTileResult<T> result = this.tileCache.get(key);
+                if (result != null) {
+                    return Future.ready(result);
+                }
+
+                // concurrent requests for the same tile agree on a single queued load without holding a global lock
+                queued = this.queuedTiles.computeIfAbsent(key, k -> new QueuedTile());
+                synchronized (queued) {
+                    // the load we found finished or was released before we could join it: check the cache again
+                    if (queued.released) {
+                        this.queuedTiles.remove(key, queued);
+                        continue;
+                    }
+                    queued.contexts.add(ctx);
+                    queued.references++;
+                    if (queued.load == null) {
+                        this.spawnLoad(key, queued);
+                    }
+                }
+                break;
             }
 
-            synchronized (this.lock) {
-                JoinHandle<DataTileResult<?>> handle = this.queuedTiles.computeIfAbsent(key, this::enqueueTile);
-                return (Future<DataTileResult<T>>) (Future) handle;
-            }
+            // the download is abandoned once every context that requested it has been cancelled
+            QueuedTile request = queued;
+            Runnable release = () -> this.releaseTile(key, request, ctx);
+            ctx.onCancel(release);
+
+            RetryingLoad<DataTileResult<?>> load = request.load;
+            return waker -> {
+                DataTileResult<T> result = (DataTileResult<T>) load.poll(waker);
+                if (result != null) {
+                    ctx.removeCancelListener(release);
+                }
+                return result;
+            };
         } catch (Exception e) {
             Terrarium.LOGGER.warn("Unexpected error occurred at {} from {}", pos, source.getClass().getSimpleName(), e);
             ErrorBroadcastHandler.recordFailure();
+            ctx.markFailed();
         }
 
         return Future.ready(DataTileResult.empty(pos));
     }
 
-    public <T> Future<Collection<DataTileResult<T>>> getTiles(TiledDataSource<T> source, DataView view) {
+    // whether a tile is loaded or already being loaded, in which case sharing it is cheaper than reading part of it
+    public boolean isTileLoaded(TiledDataSource<?> source, Vec2i pos) {
+        TileKey<?> key = new TileKey<>(source, pos.x, pos.y);
+        return this.queuedTiles.containsKey(key) || this.tileCache.contains(key);
+    }
+
+    // reads a window of a tile for a view that needs only a small part of it. windows are neither shared nor cached,
+    // since they are of no use to views over other parts of the tile
+    public <T> Future<Optional<T>> getTileWindow(TiledDataSource<T> source, Vec2i pos, DataView window, DataContext ctx) {
+        RetryingLoad<Optional<T>> load = new RetryingLoad<>(ctx::getPriority, () -> {
+            if (ctx.isCancelled()) {
+                return Optional.empty();
+            }
+
+            try {
+                long start = System.nanoTime();
+                Optional<T> data = source.loadWindow(pos, window);
+                ctx.recordTime("window " + source.getClass().getSimpleName(), System.nanoTime() - start);
+                return data;
+            } catch (HostBackoffException e) {
+                throw e;
+            } catch (Throwable t) {
+                this.logError(new TileKey<>(source, pos.x, pos.y), t);
+                ctx.markFailed();
+                return Optional.empty();
+            }
+        });
+        load.spawn();
+
+        Runnable cancel = load::cancel;
+        ctx.onCancel(cancel);
+
+        return waker -> {
+            Optional<T> result = load.poll(waker);
+            if (result != null) {
+                ctx.removeCancelListener(cancel);
+            }
+            return result;
+        };
+    }
+
+    public <T> Future<Collection<DataTileResult<T>>> getTiles(TiledDataSource<T> source, DataView view, DataContext ctx) {
         double tileWidth = source.getTileWidth();
         double tileHeight = source.getTileHeight();
 
@@ -119,13 +237,14 @@ public final class DataSourceReader {
                 MathHelper.floor(view.getMaxY() / tileHeight)
         );
 
-        return this.getTiles(source, minTile, maxTile);
+        return this.getTiles(source, minTile, maxTile, ctx);
     }
 
     public <T> Future<Collection<DataTileResult<T>>> getTiles(
             TiledDataSource<T> source,
             Vec2i min,
-            Vec2i max
+            Vec2i max,
+            DataContext ctx
     ) {
         Collection<Vec2i> tiles = new ArrayList<>((max.x - min.x + 1) * (max.y - min.y + 1));
         for (int y = min.y; y <= max.y; y++) {
@@ -133,17 +252,18 @@ public final class DataSourceReader {
                 tiles.add(new Vec2i(x, y));
             }
         }
-        return this.getTiles(source, tiles);
+        return this.getTiles(source, tiles, ctx);
     }
 
-    public <T> Future<Collection<DataTileResult<T>>> getTiles(TiledDataSource<T> source, Collection<Vec2i> tiles) {
-        return Future.joinAll(tiles.stream().map(pos -> this.getTile(source, pos)));
+    public <T> Future<Collection<DataTileResult<T>>> getTiles(TiledDataSource<T> source, Collection<Vec2i> tiles, DataContext ctx) {
+        return Future.joinAll(tiles.stream().map(pos -> this.getTile(source, pos, ctx)));
     }
 
-    private <T> void handleResult(TileKey<T> key, DataTileResult<T> result) {
-        synchronized (this.lock) {
-            this.tileCache.put(key, result);
-            this.queuedTiles.remove(key);
+    private <T> void handleResult(TileKey<T> key, QueuedTile queued, DataTileResult<T> result) {
+        this.tileCache.put(key, result);
+        synchronized (queued) {
+            queued.released = true;
+            this.queuedTiles.remove(key, queued);
         }
         if (this.queuedTiles.isEmpty()) {
             this.notifyQueueEmpty();
@@ -161,41 +281,117 @@ public final class DataSourceReader {
         ErrorBroadcastHandler.recordFailure();
     }
 
-    private static class TileKey<T> {
-        final TiledDataSource<T> source;
-        final int x;
-        final int y;
+    private interface Load<T> {
+        T load() throws HostBackoffException;
+    }
 
-        TileKey(TiledDataSource<T> source, int x, int y) {
-            this.source = source;
-            this.x = x;
-            this.y = y;
+    // a load on the loader threads that does not wait out the backoff of its host there, where it would hold up loads
+    // that could go ahead in the meantime, such as those of tiles cached on disk. it is spawned again once the backoff
+    // has passed, or given up on if cancelled by then
+    private final class RetryingLoad<T> {
+        final IntSupplier priority;
+        final Load<T> load;
+
+        private JoinHandle<Attempt<T>> attempt;
+        private long retryAt;
+        private boolean waiting;
+        private final List<Waker> wakers = new ArrayList<>();
+
+        RetryingLoad(IntSupplier priority, Load<T> load) {
+            this.priority = priority;
+            this.load = load;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (o == this) return true;
+        synchronized void spawn() {
+            Executor executor = command -> DataSourceReader.this.loadScheduler.execute(this.priority, command);
+            this.attempt = Future.spawnBlocking(executor, () -> {
+                try {
+                    return new Attempt<>(this.load.load(), 0);
+                } catch (HostBackoffException e) {
+                    return new Attempt<>(null, e.getRetryAfterMs());
+                }
+            });
+        }
+
+        synchronized T poll(Waker waker) {
+            while (true) {
+                if (this.waiting) {
+                    if (System.currentTimeMillis() < this.retryAt) {
+                        this.wakers.add(waker);
+                        return null;
+                    }
+                    this.waiting = false;
+                    this.spawn();
+                }
+
+                Attempt<T> attempt = this.attempt.poll(waker);
+                if (attempt == null) {
+                    return null;
+                }
+
+                if (attempt.retryAfterMs <= 0) {
+                    return attempt.result;
+                }
+
+                this.waiting = true;
+                this.retryAt = System.currentTimeMillis() + attempt.retryAfterMs;
+                this.attempt = null;
+                DataSourceReader.this.retryService.schedule(this::wake, attempt.retryAfterMs, TimeUnit.MILLISECONDS);
+            }
+        }
 
-            if (o instanceof TileKey) {
-                TileKey key = (TileKey) o;
-                return key.source == this.source && key.x == this.x && key.y == this.y;
+        // the load is expected to check for its own cancellation, which ends it once it is retried
+        void cancel() {
+            JoinHandle<Attempt<T>> attempt;
+            synchronized (this) {
+                attempt = this.attempt;
+            }
+            if (attempt != null) {
+                attempt.cancel();
             }
+        }
 
-            return false;
+        private void wake() {
+            List<Waker> wakers;
+            synchronized (this) {
+                wakers = new ArrayList<>(this.wakers);
+                this.wakers.clear();
+            }
+            wakers.forEach(Waker::wake);
         }
+    }
+
+    private static final class Attempt<T> {
+        final T result;
+        final long retryAfterMs;
 
-        @Override
-        public int hashCode() {
-            return 31 * this.x + this.y;
+        Attempt(T result, long retryAfterMs) {
+            this.result = result;
+            this.retryAfterMs = retryAfterMs;
         }
+    }
 
-        Vec2i asVec2() {
-            return new Vec2i(this.x, this.y);
+    private static class QueuedTile {
+        final Collection<DataContext> contexts = new ConcurrentLinkedQueue<>();
+        RetryingLoad<DataTileResult<?>> load;
+        int references;
+        boolean released;
+        volatile boolean cancelled;
+
+        // a tile is as urgent as the most urgent context waiting on it
+        int getPriority() {
+            int priority = DataContext.PRIORITY_UNTRACKED;
+            for (DataContext ctx : this.contexts) {
+                priority = Math.min(priority, ctx.getPriority());
+            }
+            return priority;
         }
 
-        @Override
-        public String toString() {
-            return "TileKey(" + this.x + "; " + this.y + ") @ " + this.source;
+        void cancel() {
+            this.cancelled = true;
+            if (this.load != null) {
+                this.load.cancel();
+            }
         }
     }
 }
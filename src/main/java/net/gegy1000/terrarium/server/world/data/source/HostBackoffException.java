@@ -0,0 +1,23 @@
+package net.gegy1000.terrarium.server.world.data.source;
+
+import java.io.IOException;
+
+// thrown when a tile cannot be requested yet because its host is backing off from failures. the load should be
+// scheduled to run again once the backoff has passed rather than wait for it on the thread it was loading on
+public final class HostBackoffException extends IOException {
+    private final long retryAfterMs;
+
+    public HostBackoffException(String message, long retryAfterMs, Throwable cause) {
+        super(message, cause);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public HostBackoffException(String message, long retryAfterMs) {
+        super(message);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return this.retryAfterMs;
+    }
+}
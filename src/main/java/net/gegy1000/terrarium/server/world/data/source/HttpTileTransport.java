@@ -0,0 +1,273 @@
+package net.gegy1000.terrarium.server.world.data.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.http.HttpHeaders;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// downloads tiles over http while limiting how hard we hit each host. connections are left to the jdk's keep-alive
+// pool, which reuses them as long as every response is read to the end. requests to a host are bounded by a permit
+// held until the response is closed, and failures put the whole host into an exponential backoff so that an outage
+// does not have every loader thread retrying at once. requests are never held back on the calling thread while their
+// host backs off: they fail with a HostBackoffException, so that the caller can run them again once it has passed,
+// until a tile has failed the maximum number of attempts. tiles that do not exist are remembered for a short while
+public final class HttpTileTransport implements TileTransport {
+    private final int maxConnectionsPerHost;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> notFound;
+    private final Cache<String, Integer> failedAttempts;
+
+    private HttpTileTransport(Builder builder) {
+        this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+        this.maxAttempts = Math.max(builder.maxAttempts, 1);
+        this.baseBackoffMs = builder.baseBackoffMs;
+        this.maxBackoffMs = builder.maxBackoffMs;
+        this.connectTimeoutMs = builder.connectTimeoutMs;
+        this.readTimeoutMs = builder.readTimeoutMs;
+
+        this.notFound = CacheBuilder.newBuilder()
+                .maximumSize(1024)
+                .expireAfterWrite(builder.notFoundExpiryMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        this.failedAttempts = CacheBuilder.newBuilder()
+                .maximumSize(1024)
+                .expireAfterWrite(this.maxBackoffMs * this.maxAttempts * 2, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public InputStream get(URL url) throws IOException {
+        String key = url.toString();
+        if (this.notFound.getIfPresent(key) != null) {
+            throw new FileNotFoundException(key);
+        }
+
+        Host host = this.hosts.computeIfAbsent(url.getHost(), h -> new Host(this.maxConnectionsPerHost));
+
+        long backoff = host.getBackoffRemaining();
+        if (backoff > 0) {
+            throw new HostBackoffException("Backing off from " + url.getHost(), backoff);
+        }
+
+        try {
+            InputStream input = this.tryGet(url, host);
+            host.onSuccess();
+            this.failedAttempts.invalidate(key);
+            return input;
+        } catch (RetryableException e) {
+            host.onFailure(this.baseBackoffMs, this.maxBackoffMs);
+
+            int attempts = this.failedAttempts.asMap().merge(key, 1, Integer::sum);
+            if (attempts >= this.maxAttempts) {
+                this.failedAttempts.invalidate(key);
+                throw e;
+            }
+
+            throw new HostBackoffException("Backing off from " + url.getHost(), Math.max(host.getBackoffRemaining(), 1), e);
+        }
+    }
+
+    private InputStream tryGet(URL url, Host host) throws IOException {
+        host.acquire();
+
+        boolean opened = false;
+        try {
+            HttpURLConnection http = (HttpURLConnection) url.openConnection();
+            http.setRequestMethod("GET");
+            http.setRequestProperty(HttpHeaders.USER_AGENT, "terrarium");
+            http.setConnectTimeout(this.connectTimeoutMs);
+            http.setReadTimeout(this.readTimeoutMs);
+
+            int code;
+            try {
+                code = http.getResponseCode();
+            } catch (IOException e) {
+                throw new RetryableException("Failed to connect to " + url, e);
+            }
+
+            if (code == HttpURLConnection.HTTP_OK) {
+                InputStream input = new ReleasingInputStream(http.getInputStream(), host);
+                opened = true;
+                return input;
+            }
+
+            // the error body must be read out for the connection to be kept alive
+            drain(http.getErrorStream());
+
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                this.notFound.put(url.toString(), Boolean.TRUE);
+                throw new FileNotFoundException(url.toString());
+            } else if (code == 429 || code >= 500) {
+                throw new RetryableException("Received " + code + " from " + url);
+            } else {
+                throw new IOException("Received unexpected " + code + " from " + url);
+            }
+        } finally {
+            if (!opened) {
+                host.release();
+            }
+        }
+    }
+
+    private static void drain(InputStream input) {
+        if (input == null) return;
+        try (InputStream in = input) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class Host {
+        final Semaphore permits;
+
+        int failures;
+        long backoffUntil;
+
+        Host(int maxConnections) {
+            this.permits = new Semaphore(maxConnections, true);
+        }
+
+        void acquire() throws InterruptedIOException {
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a connection");
+            }
+        }
+
+        void release() {
+            this.permits.release();
+        }
+
+        synchronized long getBackoffRemaining() {
+            return this.backoffUntil - System.currentTimeMillis();
+        }
+
+        synchronized void onSuccess() {
+            this.failures = 0;
+            this.backoffUntil = 0;
+        }
+
+        // the backoff doubles with every backoff window that ends in another failure, jittered so that waiting loads do
+        // not retry in lockstep. requests that were already in flight when the host started backing off fail
+        // together, and only count as the one failure that started the window
+        synchronized void onFailure(long baseMs, long maxMs) {
+            long now = System.currentTimeMillis();
+            if (now < this.backoffUntil) {
+                return;
+            }
+
+            long backoff = Math.min(maxMs, baseMs << Math.min(this.failures, 16));
+            long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+
+            this.failures++;
+            this.backoffUntil = now + jittered;
+        }
+    }
+
+    private static class ReleasingInputStream extends FilterInputStream {
+        private final Host host;
+        private boolean closed;
+
+        ReleasingInputStream(InputStream input, Host host) {
+            super(input);
+            this.host = host;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                synchronized (this) {
+                    if (!this.closed) {
+                        this.closed = true;
+                        this.host.release();
+                    }
+                }
+            }
+        }
+    }
+
+    private static class RetryableException extends IOException {
+        RetryableException(String message) {
+            super(message);
+        }
+
+        RetryableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public static class Builder {
+        // one fewer than the tile loader has threads, so that a slow host cannot hold up the tiles of every other
+        private int maxConnectionsPerHost = Math.max(DataSourceReader.LOAD_THREADS - 1, 1);
+        private int maxAttempts = 4;
+        private long baseBackoffMs = 500;
+        private long maxBackoffMs = 30 * 1000;
+        private long notFoundExpiryMs = 5 * 60 * 1000;
+        private int connectTimeoutMs = 10 * 1000;
+        private int readTimeoutMs = 30 * 1000;
+
+        private Builder() {
+        }
+
+        public Builder maxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder backoff(long baseMs, long maxMs) {
+            this.baseBackoffMs = baseMs;
+            this.maxBackoffMs = maxMs;
+            return this;
+        }
+
+        public Builder notFoundExpiry(long expiryMs) {
+            this.notFoundExpiryMs = expiryMs;
+            return this;
+        }
+
+        public Builder timeouts(int connectMs, int readMs) {
+            this.connectTimeoutMs = connectMs;
+            this.readTimeoutMs = readMs;
+            return this;
+        }
+
+        public HttpTileTransport build() {
+            return new HttpTileTransport(this);
+        }
+    }
+}
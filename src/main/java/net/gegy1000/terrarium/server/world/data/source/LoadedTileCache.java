@@ -0,0 +1,185 @@
+package net.gegy1000.terrarium.server.world.data.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import net.gegy1000.terrarium.server.config.TerrariumConfig;
+import net.gegy1000.terrarium.server.world.data.raster.AbstractRaster;
+import net.gegy1000.terrarium.server.world.data.raster.OffHeapRaster;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// holds loaded tiles within a memory budget, weighing each tile by the memory its data holds. every source family has
+// its own cache limited to its quota of the budget, so that cheap tiles from one source cannot evict the expensive
+// tiles of another, and so that loads from different sources never contend on a shared lock. the zoom levels of a
+// dataset are one family, so that together they take up only the quota of that dataset. tiles evicted from the heap
+// can optionally be kept off-heap, from where they are restored by a copy rather than a reload
+final class LoadedTileCache {
+    private static final long EXPIRE_SECONDS = 60;
+    private static final long ENTRY_BYTES = 256;
+    private static final long MB = 1024 * 1024;
+
+    private final Map<Object, SourceCache> families = new ConcurrentHashMap<>();
+
+    // in access order, so the eldest entry is always the least recently used. this is only locked when tiles are
+    // evicted from or restored to the heap, and not at all while the off-heap budget is disabled
+    private final LinkedHashMap<TileKey<?>, OffHeapRaster<?>> offHeap = new LinkedHashMap<>(64, 0.75F, true);
+    private long offHeapBytes;
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    <T> DataTileResult<T> get(TileKey<T> key) {
+        SourceCache cache = this.families.get(key.source.getCacheFamily());
+        if (cache != null) {
+            DataTileResult<?> result = cache.tiles.getIfPresent(key);
+            if (result != null) {
+                return (DataTileResult<T>) result;
+            }
+        }
+
+        OffHeapRaster<?> raster = this.takeOffHeap(key);
+        if (raster != null) {
+            DataTileResult<T> result = DataTileResult.of(key.asVec2(), (T) raster.restore());
+            this.put(key, result);
+            return result;
+        }
+
+        return null;
+    }
+
+    boolean contains(TileKey<?> key) {
+        SourceCache cache = this.families.get(key.source.getCacheFamily());
+        if (cache != null && cache.tiles.getIfPresent(key) != null) {
+            return true;
+        }
+
+        if (TerrariumConfig.offHeapTileCacheMemoryMb <= 0) {
+            return false;
+        }
+
+        synchronized (this.offHeap) {
+            return this.offHeap.containsKey(key);
+        }
+    }
+
+    <T> void put(TileKey<T> key, DataTileResult<T> result) {
+        SourceCache cache = this.families.computeIfAbsent(key.source.getCacheFamily(), family -> new SourceCache(key.source));
+        cache.tiles.put(key, result);
+        cache.bytes.addAndGet(weigh(key, result));
+    }
+
+    void clear() {
+        for (SourceCache cache : this.families.values()) {
+            cache.tiles.invalidateAll();
+        }
+        this.families.clear();
+
+        synchronized (this.offHeap) {
+            this.offHeap.clear();
+            this.offHeapBytes = 0;
+        }
+    }
+
+    String getStats() {
+        long heapCount = 0;
+        long heapBytes = 0;
+        for (SourceCache cache : this.families.values()) {
+            heapCount += cache.tiles.size();
+            heapBytes += cache.bytes.get();
+        }
+
+        synchronized (this.offHeap) {
+            return String.format("%d tiles (%dMB) on heap from %d source families, %d tiles (%dMB) off heap",
+                    heapCount, heapBytes / MB, this.families.size(),
+                    this.offHeap.size(), this.offHeapBytes / MB
+            );
+        }
+    }
+
+    @Nullable
+    private OffHeapRaster<?> takeOffHeap(TileKey<?> key) {
+        if (TerrariumConfig.offHeapTileCacheMemoryMb <= 0) {
+            return null;
+        }
+
+        synchronized (this.offHeap) {
+            OffHeapRaster<?> raster = this.offHeap.remove(key);
+            if (raster != null) {
+                this.offHeapBytes -= raster.getByteSize();
+            }
+            return raster;
+        }
+    }
+
+    private void moveOffHeap(TileKey<?> key, DataTileResult<?> result) {
+        long budget = TerrariumConfig.offHeapTileCacheMemoryMb * MB;
+        if (budget <= 0 || !result.data.isPresent()) {
+            return;
+        }
+
+        Object data = result.data.get();
+        if (!(data instanceof AbstractRaster)) {
+            return;
+        }
+
+        OffHeapRaster<?> raster = ((AbstractRaster<?>) data).offHeap();
+        if (raster == null || raster.getByteSize() > budget) {
+            return;
+        }
+
+        synchronized (this.offHeap) {
+            OffHeapRaster<?> previous = this.offHeap.put(key, raster);
+            if (previous != null) {
+                this.offHeapBytes -= previous.getByteSize();
+            }
+            this.offHeapBytes += raster.getByteSize();
+
+            Iterator<OffHeapRaster<?>> iterator = this.offHeap.values().iterator();
+            while (this.offHeapBytes > budget && iterator.hasNext()) {
+                this.offHeapBytes -= iterator.next().getByteSize();
+                iterator.remove();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int weigh(TileKey<T> key, DataTileResult<?> result) {
+        long bytes = ENTRY_BYTES + ((DataTileResult<T>) result).data.map(key.source::getByteSize).orElse(0L);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private final class SourceCache {
+        final Cache<TileKey<?>, DataTileResult<?>> tiles;
+        final AtomicLong bytes = new AtomicLong();
+
+        // every source in a family is expected to have the same quota, so the first one to be cached decides it
+        SourceCache(TiledDataSource<?> source) {
+            long quota = (long) (TerrariumConfig.tileCacheMemoryMb * MB * source.getCacheQuota());
+            this.tiles = CacheBuilder.newBuilder()
+                    .maximumWeight(Math.max(quota, 0))
+                    .weigher((TileKey<?> key, DataTileResult<?> result) -> weigh(key, result))
+                    .expireAfterAccess(EXPIRE_SECONDS, TimeUnit.SECONDS)
+                    .removalListener(this::onRemoval)
+                    .build();
+        }
+
+        private void onRemoval(RemovalNotification<TileKey<?>, DataTileResult<?>> notification) {
+            TileKey<?> key = notification.getKey();
+            DataTileResult<?> result = notification.getValue();
+            if (key == null || result == null) {
+                return;
+            }
+
+            this.bytes.addAndGet(-weigh(key, result));
+            if (notification.wasEvicted()) {
+                LoadedTileCache.this.moveOffHeap(key, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package net.gegy1000.terrarium.server.world.data.source;
+
+import net.gegy1000.terrarium.server.util.Vec2i;
+
+final class TileKey<T> {
+    final TiledDataSource<T> source;
+    final int x;
+    final int y;
+
+    TileKey(TiledDataSource<T> source, int x, int y) {
+        this.source = source;
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+
+        if (o instanceof TileKey) {
+            TileKey key = (TileKey) o;
+            return key.source == this.source && key.x == this.x && key.y == this.y;
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * System.identityHashCode(this.source) + this.x) + this.y;
+    }
+
+    Vec2i asVec2() {
+        return new Vec2i(this.x, this.y);
+    }
+
+    @Override
+    public String toString() {
+        return "TileKey(" + this.x + "; " + this.y + ") @ " + this.source;
+    }
+}
@@ -0,0 +1,10 @@
+package net.gegy1000.terrarium.server.world.data.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+// fetches remote tile data for tiled sources, so that how tiles are downloaded can be swapped out
+public interface TileTransport {
+    InputStream get(URL url) throws IOException;
+}
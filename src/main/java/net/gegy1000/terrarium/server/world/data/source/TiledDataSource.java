@@ -1,11 +1,11 @@
 package net.gegy1000.terrarium.server.world.data.source;
 
 import net.gegy1000.terrarium.server.util.Vec2i;
-import org.apache.http.HttpHeaders;
+import net.gegy1000.terrarium.server.world.data.DataView;
+import net.gegy1000.terrarium.server.world.data.raster.AbstractRaster;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -15,6 +15,10 @@ public abstract class TiledDataSource<T> {
     public static final Path LEGACY_CACHE_ROOT = Paths.get(".", "mods/terrarium/cache");
     public static final Path GLOBAL_CACHE_ROOT = Paths.get(".", "mods/terrarium/cache2");
 
+    private static final long DEFAULT_TILE_BYTES = 64 * 1024;
+
+    private static volatile TileTransport transport = HttpTileTransport.builder().build();
+
     protected final double tileWidth;
     protected final double tileHeight;
 
@@ -35,12 +39,43 @@ public abstract class TiledDataSource<T> {
         return this.tileHeight;
     }
 
+    // the fraction of the tile cache budget that loaded tiles from this source may take up. sources that are used
+    // together should have quotas that add up to no more than the whole budget
+    public double getCacheQuota() {
+        return 0.1;
+    }
+
+    // sources of the same family, such as each zoom level of one dataset, share a single quota in the tile cache
+    public Object getCacheFamily() {
+        return this;
+    }
+
+    // the approximate memory held by a loaded tile, used to weigh it against the tile cache budget
+    public long getByteSize(T tile) {
+        if (tile instanceof AbstractRaster) {
+            return ((AbstractRaster<?>) tile).getByteSize();
+        }
+        return DEFAULT_TILE_BYTES;
+    }
+
     public abstract Optional<T> load(Vec2i pos) throws IOException;
 
+    // sources that can read part of a tile without decoding the rest of it, for views that only need a small part of
+    // a tile that is not already loaded
+    public boolean canLoadWindows() {
+        return false;
+    }
+
+    // loads the given window of a tile, relative to the origin of the tile, into data that covers only that window
+    public Optional<T> loadWindow(Vec2i pos, DataView window) throws IOException {
+        throw new UnsupportedOperationException("Cannot load windows of tiles from " + this.getClass().getSimpleName());
+    }
+
+    public static void setTransport(TileTransport transport) {
+        TiledDataSource.transport = transport;
+    }
+
     protected static InputStream httpGet(URL url) throws IOException {
-        HttpURLConnection http = (HttpURLConnection) url.openConnection();
-        http.setRequestMethod("GET");
-        http.setRequestProperty(HttpHeaders.USER_AGENT, "terrarium");
-        return http.getInputStream();
+        return transport.get(url);
     }
 }
@@ -0,0 +1,134 @@
+package net.gegy1000.earth.server.world.data.source.cache;
+
+import net.gegy1000.terrarium.server.util.Vec2i;
+import net.gegy1000.terrarium.server.world.data.raster.FloatRaster;
+import net.gegy1000.terrarium.server.world.data.raster.ShortRaster;
+import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DecodedTileStoreTest {
+    // large enough that wider rasters take several pieces to read
+    private static final int SIZE = 300;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private DecodedTileBudget budget;
+
+    @Before
+    public void setUp() {
+        this.root = this.folder.getRoot().toPath();
+        this.budget = new DecodedTileBudget(this.root, () -> Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testShortRoundTrip() {
+        DecodedTileStore<ShortRaster> store = new DecodedTileStore<>(this::path, ShortRaster::create, this.budget);
+
+        ShortRaster raster = ShortRaster.create(SIZE, SIZE);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                raster.set(x, y, (short) (x * 97 - y * 31));
+            }
+        }
+        store.write(new Vec2i(0, 0), raster);
+
+        ShortRaster read = store.read(new Vec2i(0, 0));
+        assertNotNull(read);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(raster.get(x, y), read.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testFloatRoundTrip() {
+        DecodedTileStore<FloatRaster> store = new DecodedTileStore<>(this::path, FloatRaster::create, this.budget);
+
+        FloatRaster raster = FloatRaster.create(SIZE, SIZE);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                raster.set(x, y, x * 0.5F - y * 0.25F);
+            }
+        }
+        store.write(new Vec2i(1, 2), raster);
+
+        FloatRaster read = store.read(new Vec2i(1, 2));
+        assertNotNull(read);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(raster.get(x, y), read.get(x, y), 0.0F);
+            }
+        }
+    }
+
+    @Test
+    public void testByteRoundTrip() {
+        DecodedTileStore<UByteRaster> store = new DecodedTileStore<>(this::path, UByteRaster::create, this.budget);
+
+        UByteRaster raster = UByteRaster.create(SIZE, SIZE);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                raster.setInt(x, y, (x + y * 3) & 0xFF);
+            }
+        }
+        store.write(new Vec2i(0, 0), raster);
+
+        UByteRaster read = store.read(new Vec2i(0, 0));
+        assertNotNull(read);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(raster.getInt(x, y), read.getInt(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedTileIsDropped() throws IOException {
+        DecodedTileStore<ShortRaster> store = new DecodedTileStore<>(this::path, ShortRaster::create, this.budget);
+        store.write(new Vec2i(0, 0), ShortRaster.create(SIZE, SIZE));
+
+        Path path = this.path(new Vec2i(0, 0));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertNull(store.read(new Vec2i(0, 0)));
+    }
+
+    // reads leave the files alone until the budget is flushed
+    @Test
+    public void testReadsAreSavedOnFlush() throws IOException {
+        DecodedTileStore<ShortRaster> store = new DecodedTileStore<>(this::path, ShortRaster::create, this.budget);
+        store.write(new Vec2i(0, 0), ShortRaster.create(SIZE, SIZE));
+
+        Path path = this.path(new Vec2i(0, 0));
+        FileTime old = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(path, old);
+
+        assertNotNull(store.read(new Vec2i(0, 0)));
+        assertEquals(old, Files.getLastModifiedTime(path));
+
+        this.budget.flush();
+        assertNotEquals(old, Files.getLastModifiedTime(path));
+    }
+
+    private Path path(Vec2i pos) {
+        return this.root.resolve(pos.x + "/" + pos.y);
+    }
+}
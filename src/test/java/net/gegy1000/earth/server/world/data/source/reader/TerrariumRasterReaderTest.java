@@ -0,0 +1,256 @@
+package net.gegy1000.earth.server.world.data.source.reader;
+
+import net.gegy1000.terrarium.server.world.data.DataView;
+import net.gegy1000.terrarium.server.world.data.raster.ByteRaster;
+import net.gegy1000.terrarium.server.world.data.raster.IntegerRaster;
+import net.gegy1000.terrarium.server.world.data.raster.ShortRaster;
+import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
+import org.junit.Test;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TerrariumRasterReaderTest {
+    private static final int WIDTH = 50;
+    private static final int HEIGHT = 37;
+    private static final int CHUNK_SIZE = 16;
+
+    private static final int UBYTE = 0;
+    private static final int BYTE = 1;
+    private static final int SHORT = 2;
+
+    @Test
+    public void testReadsV0() throws IOException {
+        assertRoundTrip(0, UBYTE, UByteRaster.class, 0, 255);
+        assertRoundTrip(0, BYTE, ByteRaster.class, -128, 127);
+        assertRoundTrip(0, SHORT, ShortRaster.class, -32768, 32767);
+    }
+
+    @Test
+    public void testReadsV1() throws IOException {
+        assertRoundTrip(1, UBYTE, UByteRaster.class, 0, 255);
+        assertRoundTrip(1, BYTE, ByteRaster.class, -128, 127);
+        assertRoundTrip(1, SHORT, ShortRaster.class, -32768, 32767);
+    }
+
+    @Test
+    public void testReadsV1FromTrickledStream() throws IOException {
+        int[] values = generate(-32768, 32767);
+        byte[] bytes = write(1, SHORT, values);
+
+        // a stream that has never anything available, as a piped stream does while waiting on its writer
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 7));
+            }
+
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+
+        assertValues(values, TerrariumRasterReader.read(trickle, ShortRaster.class));
+    }
+
+    @Test
+    public void testReadsWindows() throws IOException {
+        int[] values = generate(-32768, 32767);
+
+        // within one chunk, across chunk edges, and clipped against the edge of the raster
+        DataView[] windows = new DataView[] {
+                DataView.rect(2, 3, 10, 5),
+                DataView.rect(10, 12, 25, 9),
+                DataView.rect(40, 30, 10, 7)
+        };
+
+        for (int version = 0; version <= 1; version++) {
+            byte[] bytes = write(version, SHORT, values);
+            for (DataView window : windows) {
+                ShortRaster raster = TerrariumRasterReader.read(new ByteArrayInputStream(bytes), ShortRaster.class, window);
+                assertWindowValues(values, window, raster);
+            }
+        }
+    }
+
+    // the rest of the stream is still read through after the last chunk in the window, so that a caching input sees
+    // the whole download
+    @Test
+    public void testWindowReadsV1ToEnd() throws IOException {
+        byte[] bytes = write(1, SHORT, generate(-32768, 32767));
+        ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+
+        TerrariumRasterReader.read(input, ShortRaster.class, DataView.rect(0, 0, 4, 4));
+        assertEquals(0, input.available());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsUnexpectedFormat() throws IOException {
+        byte[] bytes = write(1, UBYTE, generate(0, 255));
+        TerrariumRasterReader.read(new ByteArrayInputStream(bytes), ShortRaster.class);
+    }
+
+    private static <T extends IntegerRaster<?>> void assertRoundTrip(int version, int format, Class<T> type, int min, int max) throws IOException {
+        int[] values = generate(min, max);
+        byte[] bytes = write(version, format, values);
+        assertValues(values, TerrariumRasterReader.read(new ByteArrayInputStream(bytes), type));
+    }
+
+    private static void assertValues(int[] expected, IntegerRaster<?> raster) {
+        assertEquals(WIDTH, raster.getWidth());
+        assertEquals(HEIGHT, raster.getHeight());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals("at " + x + ", " + y, expected[x + y * WIDTH], raster.getInt(x, y));
+            }
+        }
+    }
+
+    private static void assertWindowValues(int[] expected, DataView window, IntegerRaster<?> raster) {
+        assertEquals(window.getWidth(), raster.getWidth());
+        assertEquals(window.getHeight(), raster.getHeight());
+        for (int y = window.getMinY(); y < Math.min(window.getMaxY(), HEIGHT); y++) {
+            for (int x = window.getMinX(); x < Math.min(window.getMaxX(), WIDTH); x++) {
+                String at = "at " + x + ", " + y + " in " + window;
+                assertEquals(at, expected[x + y * WIDTH], raster.getInt(x - window.getMinX(), y - window.getMinY()));
+            }
+        }
+    }
+
+    // a random walk, so that the filters have something to predict, with the occasional jump across the whole range
+    private static int[] generate(int min, int max) {
+        Random random = new Random(4);
+        int[] values = new int[WIDTH * HEIGHT];
+        int value = (min + max) / 2;
+        for (int i = 0; i < values.length; i++) {
+            if (random.nextInt(20) == 0) {
+                value = min + random.nextInt(max - min + 1);
+            } else {
+                value = Math.max(min, Math.min(max, value + random.nextInt(9) - 4));
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    private static byte[] write(int version, int format, int[] values) throws IOException {
+        List<int[]> views = new ArrayList<>();
+        List<RasterFilter> filters = new ArrayList<>();
+        List<byte[]> chunks = new ArrayList<>();
+
+        // every filter is used across the chunks, and the chunks at the edges are smaller than the rest
+        RasterFilter[] allFilters = RasterFilter.values();
+        for (int y = 0; y < HEIGHT; y += CHUNK_SIZE) {
+            for (int x = 0; x < WIDTH; x += CHUNK_SIZE) {
+                int[] view = new int[] { x, y, Math.min(CHUNK_SIZE, WIDTH - x), Math.min(CHUNK_SIZE, HEIGHT - y) };
+                RasterFilter filter = allFilters[chunks.size() % allFilters.length];
+                views.add(view);
+                filters.add(filter);
+                chunks.add(compress(values, view, filter, format));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write("TERRARIUM/RASTER".getBytes(StandardCharsets.US_ASCII));
+        out.writeByte(version);
+        out.writeInt(WIDTH);
+        out.writeInt(HEIGHT);
+        out.writeByte(format);
+
+        if (version == 0) {
+            for (int i = 0; i < chunks.size(); i++) {
+                ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+                DataOutputStream chunkOut = new DataOutputStream(chunkBytes);
+                writeChunkHeader(chunkOut, views.get(i), filters.get(i));
+                chunkOut.write(chunks.get(i));
+
+                out.writeInt(chunkBytes.size());
+                chunkBytes.writeTo(out);
+            }
+        } else {
+            out.writeInt(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                writeChunkHeader(out, views.get(i), filters.get(i));
+                out.writeInt(chunks.get(i).length);
+            }
+            for (byte[] chunk : chunks) {
+                out.write(chunk);
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeChunkHeader(DataOutputStream out, int[] view, RasterFilter filter) throws IOException {
+        for (int component : view) {
+            out.writeInt(component);
+        }
+        out.writeByte(filter.ordinal());
+    }
+
+    private static byte[] compress(int[] values, int[] view, RasterFilter filter, int format) throws IOException {
+        int minX = view[0];
+        int minY = view[1];
+        int width = view[2];
+        int height = view[3];
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new XZOutputStream(bytes, new LZMA2Options()))) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int a = x > 0 ? sample(values, minX + x - 1, minY + y) : 0;
+                    int b = y > 0 ? sample(values, minX + x, minY + y - 1) : 0;
+                    int c = x > 0 && y > 0 ? sample(values, minX + x - 1, minY + y - 1) : 0;
+
+                    int residual = sample(values, minX + x, minY + y) - predict(filter, a, b, c);
+                    if (format == SHORT) {
+                        out.writeShort(residual);
+                    } else {
+                        out.writeByte(residual);
+                    }
+                }
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static int sample(int[] values, int x, int y) {
+        return values[x + y * WIDTH];
+    }
+
+    private static int predict(RasterFilter filter, int a, int b, int c) {
+        switch (filter) {
+            case LEFT: return a;
+            case UP: return b;
+            case AVERAGE: return (a + b) / 2;
+            case PAETH: {
+                int p = a + b - c;
+                int deltaA = Math.abs(a - p);
+                int deltaB = Math.abs(b - p);
+                int deltaC = Math.abs(c - p);
+                if (deltaA < deltaB && deltaA < deltaC) {
+                    return a;
+                } else if (deltaB < deltaC) {
+                    return b;
+                }
+                return c;
+            }
+            default: return 0;
+        }
+    }
+}
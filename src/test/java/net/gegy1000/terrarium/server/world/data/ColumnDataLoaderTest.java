@@ -0,0 +1,64 @@
+package net.gegy1000.terrarium.server.world.data;
+
+import net.gegy1000.justnow.Waker;
+import net.gegy1000.justnow.future.Future;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColumnDataLoaderTest {
+    private PendingFuture future;
+    private ColumnDataLoader loader;
+
+    @Before
+    public void setUp() {
+        this.future = new PendingFuture();
+        this.loader = new ColumnDataLoader((view, ctx) -> this.future, DataGenerator.builder().build()::createContext, 4);
+    }
+
+    @Test
+    public void testPollsSpawnedColumns() {
+        this.loader.spawn(new ChunkPos(0, 0));
+        this.loader.advanceFor(0);
+        assertEquals(1, this.future.polls);
+    }
+
+    @Test
+    public void testSkipsPollingUntilWoken() {
+        this.loader.spawn(new ChunkPos(0, 0));
+        this.loader.advanceFor(0);
+        this.loader.advanceFor(0);
+        assertEquals(1, this.future.polls);
+    }
+
+    // futures can be woken by anything they wait on, not only by tasks on the data or tile schedulers
+    @Test
+    public void testPollsAfterWakeFromAnyThread() throws InterruptedException {
+        this.loader.spawn(new ChunkPos(0, 0));
+        this.loader.advanceFor(0);
+
+        Thread thread = new Thread(() -> this.future.waker.wake());
+        thread.start();
+        thread.join();
+
+        this.loader.advanceFor(0);
+        assertEquals(2, this.future.polls);
+
+        this.loader.advanceFor(0);
+        assertEquals(2, this.future.polls);
+    }
+
+    private static final class PendingFuture implements Future<ColumnData> {
+        int polls;
+        volatile Waker waker;
+
+        @Override
+        public ColumnData poll(Waker waker) {
+            this.polls++;
+            this.waker = waker;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package net.gegy1000.terrarium.server.world.data;
+
+import com.google.common.collect.ImmutableSet;
+import net.gegy1000.terrarium.server.world.data.raster.FloatRaster;
+import net.gegy1000.terrarium.server.world.data.raster.ShortRaster;
+import net.gegy1000.terrarium.server.world.data.raster.UByteRaster;
+import net.minecraft.util.ResourceLocation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnDataStoreTest {
+    private static final DataKey<ShortRaster> HEIGHT = new DataKey<>(new ResourceLocation("test", "height"), ShortRaster::create);
+    private static final DataKey<FloatRaster> SLOPE = new DataKey<>(new ResourceLocation("test", "slope"), FloatRaster::create);
+    private static final DataKey<UByteRaster> COVER = new DataKey<>(new ResourceLocation("test", "cover"), UByteRaster::create);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ColumnDataStore store;
+
+    @Before
+    public void setUp() {
+        this.store = new ColumnDataStore(this.folder.getRoot().toPath(), ImmutableSet.of(HEIGHT, SLOPE, COVER));
+    }
+
+    @After
+    public void tearDown() {
+        this.store.close();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        DataView view = DataView.square(-64, 128, 64);
+        Map<DataKey<?>, Optional<?>> values = generate(view, 1);
+
+        this.store.writeNow(view, values);
+        assertValues(values, view, this.store.readNow(view));
+    }
+
+    @Test
+    public void testAbsentValuesRoundTrip() throws IOException {
+        DataView view = DataView.square(0, 0, 64);
+        Map<DataKey<?>, Optional<?>> values = generate(view, 2);
+        values.put(COVER, Optional.empty());
+
+        this.store.writeNow(view, values);
+
+        Map<DataKey<?>, Optional<?>> read = this.store.readNow(view);
+        assertNotNull(read);
+        assertFalse(read.get(COVER).isPresent());
+        assertValues(values, view, read);
+    }
+
+    @Test
+    public void testMissingEntryIsNull() throws IOException {
+        assertNull(this.store.readNow(DataView.square(0, 0, 64)));
+
+        this.store.writeNow(DataView.square(0, 0, 64), generate(DataView.square(0, 0, 64), 3));
+        assertNull(this.store.readNow(DataView.square(64, 0, 64)));
+    }
+
+    // a region and a column at the same file coordinates are stored in different files, and must not overwrite each other
+    @Test
+    public void testViewSizesAreStoredSeparately() throws IOException {
+        DataView region = DataView.square(0, 0, 64);
+        DataView column = DataView.square(0, 0, 16);
+
+        Map<DataKey<?>, Optional<?>> regionValues = generate(region, 4);
+        Map<DataKey<?>, Optional<?>> columnValues = generate(column, 5);
+
+        this.store.writeNow(region, regionValues);
+        this.store.writeNow(column, columnValues);
+
+        assertValues(regionValues, region, this.store.readNow(region));
+        assertValues(columnValues, column, this.store.readNow(column));
+    }
+
+    private static Map<DataKey<?>, Optional<?>> generate(DataView view, int seed) {
+        ShortRaster height = ShortRaster.create(view);
+        FloatRaster slope = FloatRaster.create(view);
+        UByteRaster cover = UByteRaster.create(view);
+
+        for (int y = 0; y < view.getHeight(); y++) {
+            for (int x = 0; x < view.getWidth(); x++) {
+                height.set(x, y, (short) (seed * 1000 + x * 31 - y * 17));
+                slope.set(x, y, seed + x * 0.25F - y * 0.5F);
+                cover.setInt(x, y, (seed + x + y) & 0xFF);
+            }
+        }
+
+        Map<DataKey<?>, Optional<?>> values = new HashMap<>();
+        values.put(HEIGHT, Optional.of(height));
+        values.put(SLOPE, Optional.of(slope));
+        values.put(COVER, Optional.of(cover));
+        return values;
+    }
+
+    private static void assertValues(Map<DataKey<?>, Optional<?>> expected, DataView view, Map<DataKey<?>, Optional<?>> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.keySet(), actual.keySet());
+
+        for (Map.Entry<DataKey<?>, Optional<?>> entry : expected.entrySet()) {
+            Optional<?> expectedValue = entry.getValue();
+            Optional<?> actualValue = actual.get(entry.getKey());
+            assertEquals(expectedValue.isPresent(), actualValue.isPresent());
+            if (!expectedValue.isPresent()) {
+                continue;
+            }
+
+            Object expectedRaster = expectedValue.get();
+            Object actualRaster = actualValue.get();
+            assertTrue(actualRaster.getClass() == expectedRaster.getClass());
+
+            for (int y = 0; y < view.getHeight(); y++) {
+                for (int x = 0; x < view.getWidth(); x++) {
+                    String at = entry.getKey() + " at " + x + ", " + y;
+                    if (expectedRaster instanceof ShortRaster) {
+                        assertEquals(at, ((ShortRaster) expectedRaster).get(x, y), ((ShortRaster) actualRaster).get(x, y));
+                    } else if (expectedRaster instanceof FloatRaster) {
+                        assertEquals(at, ((FloatRaster) expectedRaster).get(x, y), ((FloatRaster) actualRaster).get(x, y), 0.0F);
+                    } else {
+                        assertEquals(at, ((UByteRaster) expectedRaster).getInt(x, y), ((UByteRaster) actualRaster).getInt(x, y));
+                    }
+                }
+            }
+        }
+    }
+}
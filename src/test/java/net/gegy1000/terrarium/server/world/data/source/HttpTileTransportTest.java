@@ -0,0 +1,283 @@
+package net.gegy1000.terrarium.server.world.data.source;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpTileTransportTest {
+    private static final byte[] BODY = "tile".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+
+    private final Queue<Integer> responses = new ConcurrentLinkedQueue<>();
+    private final List<Long> requestTimes = new ArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile CountDownLatch hold;
+
+    @Before
+    public void setUp() throws IOException {
+        this.serverExecutor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(this.serverExecutor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        this.requests.incrementAndGet();
+        synchronized (this.requestTimes) {
+            this.requestTimes.add(System.nanoTime());
+        }
+
+        int active = this.concurrent.incrementAndGet();
+        this.maxConcurrent.accumulateAndGet(active, Math::max);
+        try {
+            CountDownLatch hold = this.hold;
+            if (hold != null) {
+                hold.await(10, TimeUnit.SECONDS);
+            }
+
+            Integer code = this.responses.poll();
+            int status = code != null ? code : 200;
+            exchange.sendResponseHeaders(status, BODY.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(BODY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http", "127.0.0.1", this.server.getAddress().getPort(), path);
+    }
+
+    private static void readAll(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            byte[] buffer = new byte[64];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+
+    // loads the tile as the tile loader would, running it again whenever its host is backing off
+    private static InputStream getRetrying(HttpTileTransport transport, URL url) throws IOException {
+        while (true) {
+            try {
+                return transport.get(url);
+            } catch (HostBackoffException e) {
+                try {
+                    Thread.sleep(e.getRetryAfterMs());
+                } catch (InterruptedException interrupted) {
+                    throw new IOException(interrupted);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testServerErrorFailsFastDuringBackoff() throws IOException {
+        HttpTileTransport transport = HttpTileTransport.builder().backoff(200, 200).build();
+
+        this.responses.add(503);
+
+        long retryAfterMs;
+        try {
+            transport.get(this.url("/tile"));
+            fail("expected the host to back off");
+            return;
+        } catch (HostBackoffException e) {
+            retryAfterMs = e.getRetryAfterMs();
+        }
+        assertTrue("retry after " + retryAfterMs + "ms", retryAfterMs >= 100 && retryAfterMs <= 200);
+
+        // other tiles from the host are failed fast without a request, rather than wait out the backoff
+        long start = System.nanoTime();
+        try {
+            transport.get(this.url("/other"));
+            fail("expected the host to still be backing off");
+        } catch (HostBackoffException e) {
+            // expected
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        assertEquals(1, this.requests.get());
+
+        readAll(getRetrying(transport, this.url("/tile")));
+        assertEquals(2, this.requests.get());
+
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(this.requestTimes.get(1) - this.requestTimes.get(0));
+        assertTrue("retried after " + waitedMs + "ms", waitedMs >= 100);
+    }
+
+    @Test
+    public void testRetriesTooManyRequests() throws IOException {
+        HttpTileTransport transport = HttpTileTransport.builder().backoff(10, 10).build();
+
+        this.responses.add(429);
+        this.responses.add(429);
+        readAll(getRetrying(transport, this.url("/tile")));
+
+        assertEquals(3, this.requests.get());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws IOException {
+        HttpTileTransport transport = HttpTileTransport.builder().maxAttempts(3).backoff(10, 10).build();
+
+        for (int i = 0; i < 5; i++) {
+            this.responses.add(500);
+        }
+
+        try {
+            readAll(getRetrying(transport, this.url("/tile")));
+            fail("expected the request to fail");
+        } catch (FileNotFoundException e) {
+            fail("server errors should not be reported as missing tiles");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertEquals(3, this.requests.get());
+    }
+
+    // requests that fail together while already in flight start a single backoff window between them
+    @Test
+    public void testConcurrentFailuresBackOffOnce() throws Exception {
+        HttpTileTransport transport = HttpTileTransport.builder().maxConnectionsPerHost(2).backoff(1000, 60 * 1000).build();
+        this.hold = new CountDownLatch(1);
+        this.responses.add(503);
+        this.responses.add(503);
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                String path = "/tile" + i;
+                results.add(clients.submit(() -> {
+                    try {
+                        readAll(transport.get(this.url(path)));
+                    } catch (HostBackoffException e) {
+                        // expected
+                    }
+                    return null;
+                }));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (this.concurrent.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            this.hold.countDown();
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        try {
+            transport.get(this.url("/tile"));
+            fail("expected the host to be backing off");
+        } catch (HostBackoffException e) {
+            assertTrue("backing off for " + e.getRetryAfterMs() + "ms", e.getRetryAfterMs() <= 1000);
+        }
+        assertEquals(2, this.requests.get());
+    }
+
+    @Test
+    public void testNotFoundIsCached() throws IOException {
+        HttpTileTransport transport = HttpTileTransport.builder().build();
+
+        this.responses.add(404);
+        for (int i = 0; i < 2; i++) {
+            try {
+                readAll(transport.get(this.url("/missing")));
+                fail("expected the tile to be missing");
+            } catch (FileNotFoundException e) {
+                // expected
+            }
+        }
+
+        assertEquals(1, this.requests.get());
+
+        readAll(transport.get(this.url("/present")));
+        assertEquals(2, this.requests.get());
+    }
+
+    @Test
+    public void testLimitsConnectionsPerHost() throws Exception {
+        HttpTileTransport transport = HttpTileTransport.builder().maxConnectionsPerHost(2).build();
+        this.hold = new CountDownLatch(1);
+
+        ExecutorService clients = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                String path = "/tile" + i;
+                results.add(clients.submit(() -> {
+                    readAll(transport.get(this.url(path)));
+                    return null;
+                }));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (this.concurrent.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // give any request that is not held back by a permit the chance to reach the server
+            Thread.sleep(200);
+            assertEquals(2, this.concurrent.get());
+
+            this.hold.countDown();
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        assertEquals(5, this.requests.get());
+        assertEquals(2, this.maxConcurrent.get());
+    }
+}